@@ -0,0 +1,65 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares users/sec of {@code createUsers} batches against the same number of single {@code createUser} calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBatchCreateBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private UserServiceImpl userService;
+    private long sequence;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        userService = new UserServiceImpl(validator);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void singleCreates(Blackhole blackhole) {
+        for (User user : newUsers()) {
+            blackhole.consume(userService.createUser(user));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<User> batchCreate() {
+        return userService.createUsers(newUsers());
+    }
+
+    private List<User> newUsers() {
+        List<User> users = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long number = sequence++;
+            users.add(User.builder()
+                    .email("user" + number + "@mail.com")
+                    .firstName("First" + number)
+                    .lastName("Last" + number)
+                    .birthDate(LocalDate.of(1950, 1, 1).plusDays(number % 18_000))
+                    .build());
+        }
+        return users;
+    }
+}
@@ -0,0 +1,96 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to encode a HAL {@link CollectionModel} page of {@code pageSize} users as JSON, Smile and CBOR, and for a
+ * client to parse it back into a tree. The size of the encoded page of each format is printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBinaryFormatsBenchmark {
+
+    private static final String USERS_URI = "http://localhost:8080/api/users";
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"10000"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter collectionWriter;
+    private CollectionModel<UserResource> collectionModel;
+    private byte[] encodedPage;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JsonFactory factory = switch (format) {
+            case "smile" -> new SmileFactory();
+            case "cbor" -> new CBORFactory();
+            default -> new JsonFactory();
+        };
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        objectMapper.registerModule(new Jackson2HalModule());
+        objectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        collectionWriter = objectMapper.writerFor(CollectionModel.class);
+
+        List<UserResource> userResources = new ArrayList<>(pageSize);
+        for (int i = 1; i <= pageSize; i++) {
+            UserResource userResource = new UserResource(User.builder()
+                    .id(i)
+                    .email("user" + i + "@mail.com")
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .birthDate(LocalDate.of(1950, 1, 1).plusDays(i))
+                    .address("Khreshchatyk " + i + ", Kyiv")
+                    .phoneNumber("+380501234567")
+                    .build());
+            userResource.add(Link.of(USERS_URI + "/" + i));
+            userResources.add(userResource);
+        }
+        collectionModel = CollectionModel.of(userResources, Link.of(USERS_URI + "?limit=" + pageSize),
+                Link.of(USERS_URI + "?limit=" + pageSize + "&cursor=aWQ6MTAw", "next"));
+        encodedPage = encode();
+        System.out.printf("%n%s: %d bytes per page of %d users%n", format, encodedPage.length, pageSize);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return collectionWriter.writeValueAsBytes(collectionModel);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws Exception {
+        return objectMapper.readTree(encodedPage);
+    }
+}
@@ -0,0 +1,88 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to write {@code application/hal+json} for one {@link UserResource} and for a {@link CollectionModel} page of
+ * {@code pageSize} users, with a mapper set up like the one Spring HATEOAS registers. Serialization does not depend
+ * on the number of stored users, so it is parameterized by the page size instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserHalSerializationBenchmark {
+
+    private static final String USERS_URI = "http://localhost:8080/api/users";
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private ObjectWriter resourceWriter;
+    private ObjectWriter collectionWriter;
+    private UserResource userResource;
+    private CollectionModel<UserResource> collectionModel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        objectMapper.registerModule(new Jackson2HalModule());
+        objectMapper.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        resourceWriter = objectMapper.writerFor(UserResource.class);
+        collectionWriter = objectMapper.writerFor(CollectionModel.class);
+
+        List<UserResource> userResources = new ArrayList<>(pageSize);
+        for (int i = 1; i <= pageSize; i++) {
+            userResources.add(newUserResource(i));
+        }
+        userResource = userResources.get(0);
+        collectionModel = CollectionModel.of(userResources, Link.of(USERS_URI + "?limit=" + pageSize),
+                Link.of(USERS_URI + "?limit=" + pageSize + "&cursor=aWQ6MTAw", "next"));
+    }
+
+    @Benchmark
+    public byte[] userResource() throws Exception {
+        return resourceWriter.writeValueAsBytes(userResource);
+    }
+
+    @Benchmark
+    public byte[] collectionModel() throws Exception {
+        return collectionWriter.writeValueAsBytes(collectionModel);
+    }
+
+    private static UserResource newUserResource(long id) {
+        UserResource userResource = new UserResource(User.builder()
+                .id(id)
+                .email("user" + id + "@mail.com")
+                .firstName("First" + id)
+                .lastName("Last" + id)
+                .birthDate(LocalDate.of(1950, 1, 1).plusDays(id))
+                .address("Khreshchatyk " + id + ", Kyiv")
+                .phoneNumber("+380501234567")
+                .build());
+        userResource.add(Link.of(USERS_URI + "/" + id));
+        return userResource;
+    }
+}
@@ -0,0 +1,64 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserImportServiceImpl;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures NDJSON import throughput; the score is users/sec because each invocation imports {@value #USERS} users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UserImportBenchmark {
+
+    private static final int USERS = 100_000;
+
+    @Param({"100", "1000", "10000"})
+    private int chunkSize;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private byte[] ndjson;
+    private UserImportServiceImpl userImportService;
+
+    @Setup(Level.Trial)
+    public void generateInput() {
+        StringBuilder builder = new StringBuilder(USERS * 120);
+        for (int i = 0; i < USERS; i++) {
+            builder.append("{\"email\":\"user").append(i)
+                    .append("@mail.com\",\"firstName\":\"First").append(i)
+                    .append("\",\"lastName\":\"Last").append(i)
+                    .append("\",\"birthDate\":\"").append(LocalDate.of(1950, 1, 1).plusDays(i % 18_000))
+                    .append("\"}\n");
+        }
+        ndjson = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        userImportService = new UserImportServiceImpl(new UserServiceImpl(validator), objectMapper, chunkSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(USERS)
+    public UserImportProgress importUsers() throws IOException {
+        return userImportService.importUsers(new ByteArrayInputStream(ndjson), progress -> {
+        });
+    }
+}
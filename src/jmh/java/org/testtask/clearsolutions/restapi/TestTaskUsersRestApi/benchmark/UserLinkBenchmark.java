@@ -0,0 +1,77 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserController;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserLinkFactory;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
+
+/**
+ * Time to attach self links to a page of {@value #PAGE_SIZE} users, per controller-proxy link and with
+ * {@link UserLinkFactory}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLinkBenchmark {
+
+    private static final int PAGE_SIZE = 10_000;
+
+    private final List<User> users = new ArrayList<>(PAGE_SIZE);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.setQueryString("limit=" + PAGE_SIZE);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            users.add(User.builder()
+                    .id((long) i)
+                    .email("user" + i + "@mail.com")
+                    .firstName("First")
+                    .lastName("Last")
+                    .birthDate(LocalDate.of(2000, 1, 1))
+                    .build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public List<UserResource> methodOnLinks() {
+        List<UserResource> userResources = new ArrayList<>(users.size());
+        for (User user : users) {
+            UserResource userResource = new UserResource(user);
+            userResource.add(linkTo(methodOn(UserController.class).getUser(user.getId(), null)).withSelfRel());
+            userResources.add(userResource);
+        }
+        return userResources;
+    }
+
+    @Benchmark
+    public List<UserResource> linkFactory() {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        List<UserResource> userResources = new ArrayList<>(users.size());
+        for (User user : users) {
+            userResources.add(userLinkFactory.toResource(user));
+        }
+        return userResources;
+    }
+}
@@ -0,0 +1,64 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the service timers on the cheapest service call, a lookup by id: {@code plain} calls the service
+ * directly, {@code timed} through the same {@code @Timed} proxy and Prometheus registry the application uses,
+ * including the percentiles and the histogram.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMetricsOverheadBenchmark {
+
+    @Param({"10000"})
+    private int users;
+
+    private UserService plainService;
+    private UserService timedService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        UserServiceImpl userService = new UserServiceImpl(Validation.buildDefaultValidatorFactory().getValidator());
+        for (int i = 0; i < users; i++) {
+            userService.createUser(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .firstName("John")
+                    .lastName("Doe")
+                    .birthDate(LocalDate.of(1990, 6, 15))
+                    .build());
+        }
+        plainService = userService;
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(userService);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new TimedAspect(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)));
+        timedService = proxyFactory.getProxy();
+    }
+
+    @Benchmark
+    public User plain() {
+        return plainService.findUserById(ThreadLocalRandom.current().nextLong(users) + 1).orElseThrow();
+    }
+
+    @Benchmark
+    public User timed() {
+        return timedService.findUserById(ThreadLocalRandom.current().nextLong(users) + 1).orElseThrow();
+    }
+}
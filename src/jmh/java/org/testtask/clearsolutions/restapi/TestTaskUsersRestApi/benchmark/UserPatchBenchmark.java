@@ -0,0 +1,111 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of one {@code PATCH}: parsing the document, applying it and validating the result. The tree-based
+ * variants convert the user to a JSON tree, patch the tree with json-patch, convert it back and validate the whole
+ * user, as the controller used to; the field variants use {@link UserPatch} and validate the touched fields only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPatchBenchmark {
+
+    // configured like the application's mapper, which binds User through its constructor parameter names
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private User user;
+    private JsonNode jsonPatchDocument;
+    private JsonNode mergePatchDocument;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        user = User.builder()
+                .id(42L)
+                .version(3)
+                .email("user42@mail.com")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.of(1990, 6, 15))
+                .address("Khreshchatyk 1, Kyiv")
+                .phoneNumber("+380501234567")
+                .build();
+        jsonPatchDocument = objectMapper.readTree("""
+                [
+                    {"op": "replace", "path": "/firstName", "value": "Robert"},
+                    {"op": "add", "path": "/address", "value": "Caiman St. 3"}
+                ]
+                """);
+        mergePatchDocument = objectMapper.readTree("""
+                {"firstName": "Robert", "address": "Caiman St. 3"}
+                """);
+    }
+
+    @Benchmark
+    public User treeJsonPatch() throws Exception {
+        JsonPatch patch = JsonPatch.fromJson(jsonPatchDocument);
+        JsonNode patched = patch.apply(objectMapper.convertValue(user, JsonNode.class));
+        User patchedUser = objectMapper.treeToValue(patched, User.class);
+        return validated(patchedUser, validator.validate(patchedUser));
+    }
+
+    @Benchmark
+    public User fieldJsonPatch() {
+        UserPatch patch = UserPatch.fromJsonPatch(jsonPatchDocument);
+        User patchedUser = patch.applyTo(user);
+        return validated(patchedUser, validateFields(patchedUser, patch.getTouchedFields()));
+    }
+
+    @Benchmark
+    public User treeMergePatch() throws Exception {
+        JsonMergePatch patch = JsonMergePatch.fromJson(mergePatchDocument);
+        JsonNode patched = patch.apply(objectMapper.convertValue(user, JsonNode.class));
+        User patchedUser = objectMapper.treeToValue(patched, User.class);
+        return validated(patchedUser, validator.validate(patchedUser));
+    }
+
+    @Benchmark
+    public User fieldMergePatch() {
+        UserPatch patch = UserPatch.fromMergePatch(mergePatchDocument);
+        User patchedUser = patch.applyTo(user);
+        return validated(patchedUser, validateFields(patchedUser, patch.getTouchedFields()));
+    }
+
+    private Set<ConstraintViolation<User>> validateFields(User patchedUser, Set<String> fields) {
+        Set<ConstraintViolation<User>> violations = new HashSet<>();
+        for (String field : fields) {
+            violations.addAll(validator.validateProperty(patchedUser, field));
+        }
+        return violations;
+    }
+
+    private static User validated(User patchedUser, Set<ConstraintViolation<User>> violations) {
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException(violations.toString());
+        }
+        return patchedUser;
+    }
+}
@@ -0,0 +1,86 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserPrefixIndex;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a top-{@code limit} prefix query against a {@link UserPrefixIndex} of {@code users} users, for prefixes
+ * of 1 to 6 characters of random emails and names, so some match a handful of users and some a third of them.
+ * Setup prints the time to index the filled store and the heap the index retains per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class UserPrefixSearchBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    @Param({"10"})
+    private int limit;
+
+    private UserPrefixIndex index;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        UserStore userStore = new InMemoryUserStore();
+        List<User> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < users; i++) {
+            batch.add(newUser(i));
+            if (batch.size() == 10_000) {
+                userStore.insertAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        userStore.insertAll(batch);
+
+        long heapBefore = usedHeapAfterGc();
+        long start = System.nanoTime();
+        index = UserPrefixIndex.of(userStore);
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long heapBytes = usedHeapAfterGc() - heapBefore;
+        System.out.printf("%nindexed %d users in %d ms, %.1f heap bytes per user%n",
+                users, buildMillis, (double) heapBytes / users);
+    }
+
+    @Benchmark
+    public List<Long> findIdsByPrefix() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        User user = newUser(random.nextInt(users));
+        String name = switch (random.nextInt(3)) {
+            case 0 -> user.getEmail();
+            case 1 -> user.getFirstName();
+            default -> user.getLastName();
+        };
+        return index.findIdsByPrefix(name.substring(0, Math.min(name.length(), random.nextInt(6) + 1)), limit);
+    }
+
+    private static User newUser(long number) {
+        return User.builder()
+                .email("user" + number + "@mail.com")
+                .firstName("First" + number % 5_000)
+                .lastName("Last" + number % 20_000)
+                .birthDate(LocalDate.of(1950, 1, 1).plusDays(number % 18_000))
+                .build();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
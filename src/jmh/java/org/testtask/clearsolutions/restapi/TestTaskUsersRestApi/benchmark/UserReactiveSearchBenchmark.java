@@ -0,0 +1,120 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.TestTaskUsersRestApiApplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches a birth date search matching every user of the running application over HTTP: {@code mvcPages} follows
+ * the {@code next} links of the paged MVC search, {@code reactiveStream} reads the NDJSON stream of the reactive
+ * controller. Run it with {@code -prof gc} to compare the memory allocated per search; the sample mode reports the
+ * latency percentiles of a whole search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class UserReactiveSearchBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final String NEXT_LINK = "\"next\":{\"href\":\"";
+
+    @Param({"100000"})
+    private int users;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUri;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        context = new SpringApplicationBuilder(TestTaskUsersRestApiApplication.class)
+                .properties("server.port=0", "logging.level.root=warn")
+                .run();
+        baseUri = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        for (int start = 0; start < users; start += BATCH_SIZE) {
+            StringJoiner batch = new StringJoiner(",", "[", "]");
+            for (int i = start; i < Math.min(users, start + BATCH_SIZE); i++) {
+                batch.add("""
+                        {"email": "search%d@mail.com", "firstName": "John", "lastName": "Doe", "birthDate": "%s"}
+                        """.formatted(i, LocalDate.of(1950, 1, 1).plusDays(i % 18_000)));
+            }
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUri + "/api/users/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Could not create users: " + response.statusCode());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public int mvcPages() throws Exception {
+        int foundUsers = 0;
+        String uri = baseUri + "/api/users/search?from=1900-01-01&to=2000-01-01&limit=1000";
+        while (uri != null) {
+            String page = httpClient.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString()).body();
+            foundUsers += count(page, "\"user\":");
+            int next = page.lastIndexOf(NEXT_LINK);
+            uri = next < 0 ? null : page.substring(next + NEXT_LINK.length(), page.indexOf('"', next + NEXT_LINK.length()));
+        }
+        return checked(foundUsers);
+    }
+
+    @Benchmark
+    public int reactiveStream() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + "/api/reactive/users/search?from=1900-01-01&to=2000-01-01"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        int foundUsers = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream body = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            for (int read; (read = body.read(buffer)) > 0; ) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        foundUsers++;
+                    }
+                }
+            }
+        }
+        return checked(foundUsers);
+    }
+
+    // the three demo users are born after 2000
+    private int checked(int foundUsers) throws IOException {
+        if (foundUsers != users) {
+            throw new IOException("Found " + foundUsers + " of " + users + " users");
+        }
+        return foundUsers;
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int index = text.indexOf(token); index >= 0; index = text.indexOf(token, index + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,114 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.TestTaskUsersRestApiApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Load test of the running application over HTTP with many concurrent clients, comparing requests served by the
+ * Tomcat pool of 200 platform threads with requests served on virtual threads. Every client sends lookups by id
+ * mixed with merge patches; with the write-ahead log fsyncing every write, a patch blocks its request thread until
+ * the fsync. Throughput and the latency percentiles come from separate runs of each mode:
+ * <pre>
+ * -Dbenchmark="UserRequestThreadingBenchmark -t 1000 -p writePercent=10,50"
+ * </pre>
+ * The {@code virtual} mode needs the benchmark to run on Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(500)
+public class UserRequestThreadingBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"20"})
+    private int writePercent;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUri;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        if (threads.equals("virtual") && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later");
+        }
+        directory = Files.createTempDirectory("user-request-threading");
+        context = new SpringApplicationBuilder(TestTaskUsersRestApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "logging.level.root=warn",
+                        "spring.threads.virtual.enabled=" + threads.equals("virtual"),
+                        "user.persistence.enabled=true",
+                        "user.persistence.directory=" + directory,
+                        "user.persistence.fsync=always",
+                        "user.persistence.snapshot-interval=0")
+                .run();
+        baseUri = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/users";
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        StringJoiner batch = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < users; i++) {
+            batch.add("""
+                    {"email": "load%d@mail.com", "firstName": "John", "lastName": "Doe", "birthDate": "1990-06-15"}
+                    """.formatted(i));
+        }
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUri + "/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Could not create users: " + response.statusCode());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int request() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // the three demo users come first
+        URI uri = URI.create(baseUri + "/" + (random.nextInt(users) + 4));
+        HttpRequest request = random.nextInt(100) < writePercent
+                ? HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/merge-patch+json")
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"address\": \"" + random.nextInt() + "\"}"))
+                        .build()
+                : HttpRequest.newBuilder(uri).GET().build();
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200) {
+            throw new IllegalStateException(request.method() + " " + uri + " failed with " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,85 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.TestTaskUsersRestApiApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code GET /api/users/{id}} over HTTP for random users of the running application, with and without
+ * the response cache. The cache is large enough for all users, so after the warmup every read is a hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(4)
+public class UserResponseCacheBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    @Param({"10000"})
+    private int users;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String usersUri;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        context = new SpringApplicationBuilder(TestTaskUsersRestApiApplication.class)
+                .properties("server.port=0", "logging.level.root=warn", "user.cache.enabled=" + cache)
+                .run();
+        usersUri = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/users";
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        for (int start = 0; start < users; start += BATCH_SIZE) {
+            StringJoiner batch = new StringJoiner(",", "[", "]");
+            for (int i = start; i < Math.min(users, start + BATCH_SIZE); i++) {
+                batch.add("""
+                        {"email": "cached%d@mail.com", "firstName": "John", "lastName": "Doe", "birthDate": "%s", "address": "Khreshchatyk %d, Kyiv"}
+                        """.formatted(i, LocalDate.of(1950, 1, 1).plusDays(i % 18_000), i));
+            }
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(usersUri + "/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Could not create users: " + response.statusCode());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] getUser() throws Exception {
+        // the three demo users come first
+        long id = ThreadLocalRandom.current().nextLong(users) + 4;
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(usersUri + "/" + id)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Could not read user " + id + ": " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,113 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the {@link UserServiceImpl} hot paths against the number of stored users. {@code create} deletes the
+ * created user again, so the store keeps its size during the measurement. {@code search} asks for the first page
+ * of {@value #PAGE_SIZE} users born within one random year. 10M users need an 8 GB heap with the heap store:
+ * <pre>
+ * -Dbenchmark="UserServiceBenchmark -p users=1000,100000 -p storeType=heap"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class UserServiceBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final LocalDate FIRST_BIRTH_DATE = LocalDate.of(1950, 1, 1);
+    private static final int BIRTH_DATE_DAYS = 18_000;
+
+    @Param({"heap", "columnar"})
+    private String storeType;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int users;
+
+    private UserServiceImpl userService;
+    private UserPatch patch;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void fillStore() throws Exception {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        UserStore userStore = storeType.equals("columnar") ? new ColumnarUserStore() : new InMemoryUserStore();
+        userService = new UserServiceImpl(validator, userStore);
+        ReflectionTestUtils.setField(userService, "minAge", 18);
+        List<User> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < users; i++) {
+            batch.add(newUser("user" + i + "@mail.com", i));
+            if (batch.size() == 10_000) {
+                userStore.insertAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        userStore.insertAll(batch);
+        patch = UserPatch.fromJsonPatch(new ObjectMapper().readTree("""
+                [{"op": "replace", "path": "/address", "value": "Caiman St. 3"}]
+                """));
+    }
+
+    @Benchmark
+    public User create() {
+        User user = userService.createUser(newUser("new" + sequence++ + "@mail.com", sequence));
+        userService.deleteUserById(user.getId());
+        return user;
+    }
+
+    @Benchmark
+    public User findById() {
+        return userService.findUserById(randomId()).orElseThrow();
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return userService.findUserByEmail("user" + (randomId() - 1) + "@mail.com").orElseThrow();
+    }
+
+    @Benchmark
+    public UserPage search() {
+        LocalDate from = FIRST_BIRTH_DATE.plusDays(ThreadLocalRandom.current().nextInt(BIRTH_DATE_DAYS - 365));
+        return userService.getUsersByBirthDateRange(from, from.plusYears(1), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public User patch() {
+        return userService.patchUserById(randomId(), patch, UserStore.ANY_VERSION);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(users) + 1;
+    }
+
+    private static User newUser(String email, long number) {
+        return User.builder()
+                .email(email)
+                .firstName("First" + number % 5_000)
+                .lastName("Last" + number % 20_000)
+                .birthDate(FIRST_BIRTH_DATE.plusDays(number % BIRTH_DATE_DAYS))
+                .phoneNumber("+38050" + (1_000_000 + number % 9_000_000))
+                .build();
+    }
+}
@@ -0,0 +1,110 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ShardedUserStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a mixed load against the number of threads: reads by id and optimistic read-modify-write updates
+ * that re-read and retry when another thread changed the user in between, as {@code PATCH} does. Each method runs
+ * the same operation with a different thread count; {@code updatePercent} sets the share of updates, and the
+ * {@code sharded} store spreads users over {@code shards} heap stores. Write throughput against the number of cores is
+ * {@code updatePercent=100} on a machine with at least 8 of them:
+ * <pre>
+ * -Dbenchmark="UserStoreConcurrencyBenchmark -p updatePercent=1,10,50"
+ * -Dbenchmark="UserStoreConcurrencyBenchmark -p storeType=heap,sharded -p updatePercent=100"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class UserStoreConcurrencyBenchmark {
+
+    @Param({"heap", "columnar", "sharded"})
+    private String storeType;
+
+    @Param({"16"})
+    private int shards;
+
+    @Param({"100000"})
+    private int users;
+
+    @Param({"10"})
+    private int updatePercent;
+
+    private UserStore userStore;
+
+    @Setup(Level.Trial)
+    public void fillStore() {
+        userStore = switch (storeType) {
+            case "columnar" -> new ColumnarUserStore();
+            case "sharded" -> new ShardedUserStore(shards, InMemoryUserStore::new);
+            default -> new InMemoryUserStore();
+        };
+        List<User> batch = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            batch.add(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .firstName("First" + i % 5_000)
+                    .lastName("Last" + i % 20_000)
+                    .birthDate(LocalDate.of(1950, 1, 1).plusDays(i % 18_000))
+                    .address("0")
+                    .build());
+        }
+        userStore.insertAll(batch);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public User threads1() {
+        return readOrUpdate();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public User threads2() {
+        return readOrUpdate();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public User threads4() {
+        return readOrUpdate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public User threads8() {
+        return readOrUpdate();
+    }
+
+    private User readOrUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = random.nextLong(users) + 1;
+        if (random.nextInt(100) >= updatePercent) {
+            return userStore.findById(id).orElseThrow();
+        }
+        while (true) {
+            User user = userStore.findById(id).orElseThrow();
+            user.setAddress(String.valueOf(Integer.parseInt(user.getAddress()) + 1));
+            try {
+                return userStore.update(id, user, user.getVersion()).orElseThrow();
+            } catch (UserVersionMismatchException exception) {
+                // lost the race for this user, read it again
+            }
+        }
+    }
+}
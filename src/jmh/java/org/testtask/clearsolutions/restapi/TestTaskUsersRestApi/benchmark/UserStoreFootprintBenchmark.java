@@ -0,0 +1,106 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap-based and the columnar store holding {@code users} users. Setup prints the retained heap
+ * (and off-heap) bytes per user; the benchmark then runs a read-mostly load whose GC cost is reported with
+ * {@code -prof gc}, and the total collection time of the trial is printed at tear down:
+ * <pre>
+ * -Dbenchmark="UserStoreFootprintBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserStoreFootprintBenchmark {
+
+    @Param({"heap", "columnar"})
+    private String storeType;
+
+    @Param({"2000000"})
+    private int users;
+
+    private UserStore userStore;
+    private long gcTimeAtStart;
+
+    @Setup(Level.Trial)
+    public void fillStore() {
+        long heapBefore = usedHeapAfterGc();
+        userStore = storeType.equals("columnar") ? new ColumnarUserStore() : new InMemoryUserStore();
+        List<User> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < users; i++) {
+            batch.add(newUser(i));
+            if (batch.size() == 10_000) {
+                userStore.insertAll(batch);
+                batch = new ArrayList<>(10_000);
+            }
+        }
+        userStore.insertAll(batch);
+        long heapBytes = usedHeapAfterGc() - heapBefore;
+        long offHeapBytes = userStore instanceof ColumnarUserStore columnarUserStore ? columnarUserStore.getOffHeapBytes() : 0;
+        System.out.printf("%n%s store: %.1f heap bytes and %.1f off-heap bytes per user%n",
+                storeType, (double) heapBytes / users, (double) offHeapBytes / users);
+        gcTimeAtStart = totalGcTimeMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void reportGcTime() {
+        System.out.printf("%n%s store: %d ms spent in GC during the trial%n", storeType, totalGcTimeMillis() - gcTimeAtStart);
+    }
+
+    /**
+     * Nine reads for every update; updates replace the names and the address, which keeps the collector busy.
+     */
+    @Benchmark
+    public User readMostly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = random.nextLong(users) + 1;
+        if (random.nextInt(10) > 0) {
+            return userStore.findById(id).orElseThrow();
+        }
+        User user = newUser(id - 1);
+        user.setAddress("Street " + random.nextInt(1_000));
+        return userStore.update(id, user).orElseThrow();
+    }
+
+    private static User newUser(long number) {
+        return User.builder()
+                .email("user" + number + "@mail.com")
+                .firstName("First" + number % 5_000)
+                .lastName("Last" + number % 20_000)
+                .birthDate(LocalDate.of(1950, 1, 1).plusDays(number % 18_000))
+                .phoneNumber("+38050" + (1_000_000 + number % 9_000_000))
+                .build();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long totalGcTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
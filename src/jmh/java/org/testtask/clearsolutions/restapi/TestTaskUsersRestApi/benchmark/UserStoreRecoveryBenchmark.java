@@ -0,0 +1,87 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserSnapshots;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserStorePersistence;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserWriteAheadLog;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Measures startup recovery of a store of {@code users} users, either from a snapshot or by replaying a log
+ * holding one insert per user. The 10M case needs a heap of roughly 8 GB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class UserStoreRecoveryBenchmark {
+
+    @Param({"1000000", "10000000"})
+    private int users;
+
+    @Param({"snapshot", "log"})
+    private String source;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeData() throws IOException {
+        directory = Files.createTempDirectory("user-store-recovery");
+        if (source.equals("snapshot")) {
+            new UserSnapshots(directory).write(users, LongStream.rangeClosed(1, users).mapToObj(UserStoreRecoveryBenchmark::newUser));
+            return;
+        }
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.INTERVAL, Duration.ofSeconds(1))) {
+            writeAheadLog.replay(new HashMap<>(), 0);
+            writeAheadLog.start(new InMemoryUserStore());
+            for (long id = 1; id <= users; id++) {
+                writeAheadLog.onInsert(newUser(id));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public UserStore recover() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = new UserStorePersistence(directory, UserWriteAheadLog.FsyncPolicy.INTERVAL,
+                Duration.ofSeconds(1), Duration.ZERO)) {
+            persistence.recover(userStore);
+        }
+        return userStore;
+    }
+
+    private static User newUser(long id) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@mail.com")
+                .firstName("First" + id)
+                .lastName("Last" + id)
+                .birthDate(LocalDate.of(1950, 1, 1).plusDays(id % 18_000))
+                .phoneNumber("+38050" + (1_000_000 + id % 9_000_000))
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.benchmark;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserDto;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserMapper;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of validating one created user. {@code singlePass} is the current create path after JSON binding;
+ * {@code twoPass} adds what a create used to do on top of it: validating the request DTO in the controller and
+ * computing the minimum age cutoff from the current date. Both remove the user again to keep the store small.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserValidationBenchmark {
+
+    private static final int MIN_AGE = 18;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private UserServiceImpl userService;
+    private UserDto userDto;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        userService = new UserServiceImpl(validator);
+        ReflectionTestUtils.setField(userService, "minAge", MIN_AGE);
+        userDto = UserDto.builder()
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.of(1990, 6, 15))
+                .address("Khreshchatyk 1, Kyiv")
+                .phoneNumber("+380501234567")
+                .build();
+    }
+
+    @Benchmark
+    public User singlePass() {
+        return createAndDelete();
+    }
+
+    @Benchmark
+    public User twoPass() {
+        userDto.setEmail("user" + sequence + "@mail.com");
+        if (!validator.validate(userDto).isEmpty()
+                || !userDto.getBirthDate().plusYears(MIN_AGE).isBefore(LocalDate.now())) {
+            throw new IllegalStateException("Invalid user " + userDto);
+        }
+        return createAndDelete();
+    }
+
+    private User createAndDelete() {
+        userDto.setEmail("user" + sequence++ + "@mail.com");
+        User user = userService.createUser(UserMapper.INSTANCE.toUser(userDto));
+        userService.deleteUserById(user.getId());
+        return user;
+    }
+}
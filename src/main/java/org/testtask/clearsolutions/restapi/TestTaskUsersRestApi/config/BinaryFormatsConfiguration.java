@@ -0,0 +1,53 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.mediatype.hal.HalMediaTypeConfiguration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets callers ask for {@code application/x-jackson-smile} or {@code application/cbor} instead of JSON. Both encode
+ * the same HAL structure as {@code application/hal+json}, with the Jackson settings of the application: Spring MVC
+ * registers converters for both formats as soon as their Jackson modules are present, but with plain mappers, so
+ * this replaces them in place, after the JSON converters, and requests accepting any type still get JSON.
+ */
+@Configuration
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+    private final HalMediaTypeConfiguration halMediaTypeConfiguration;
+
+    public BinaryFormatsConfiguration(ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder,
+                                      HalMediaTypeConfiguration halMediaTypeConfiguration) {
+        this.objectMapperBuilder = objectMapperBuilder;
+        this.halMediaTypeConfiguration = halMediaTypeConfiguration;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> {
+            if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+                return new MappingJackson2SmileHttpMessageConverter(halObjectMapper(new SmileFactory()));
+            }
+            if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+                return new MappingJackson2CborHttpMessageConverter(halObjectMapper(new CBORFactory()));
+            }
+            return converter;
+        });
+    }
+
+    private ObjectMapper halObjectMapper(JsonFactory factory) {
+        // the builder bean is a prototype, so each format gets a fresh one
+        return halMediaTypeConfiguration.configureObjectMapper(objectMapperBuilder.getObject().factory(factory).build());
+    }
+}
@@ -0,0 +1,47 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserController;
+
+/**
+ * Streamed NDJSON responses write each element with the response content type, for which Spring HATEOAS registers
+ * no mapper, so representation models could not be streamed. This renders them as HAL on each NDJSON line too. It
+ * runs once the handler adapter is initialized, when Spring HATEOAS has already set up the JSON converter.
+ */
+@Configuration
+public class HalNdjsonConfiguration {
+
+    @Bean
+    public static BeanPostProcessor halNdjsonObjectMapperRegistrar() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof RequestMappingHandlerAdapter handlerAdapter) {
+                    for (HttpMessageConverter<?> converter : handlerAdapter.getMessageConverters()) {
+                        if (converter instanceof MappingJackson2HttpMessageConverter jsonConverter) {
+                            registerHalMapperForNdjson(jsonConverter);
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static void registerHalMapperForNdjson(MappingJackson2HttpMessageConverter jsonConverter) {
+        ObjectMapper halMapper = jsonConverter.getObjectMappersForType(RepresentationModel.class).get(MediaTypes.HAL_JSON);
+        if (halMapper != null) {
+            MediaType ndjson = MediaType.parseMediaType(UserController.NDJSON_VALUE);
+            jsonConverter.registerObjectMappersForType(RepresentationModel.class, mappers -> mappers.put(ndjson, halMapper));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationFollower;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationLog;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationProtocol;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * A leader logs the mutations of its store for followers. A follower replicates the leader into its own store,
+ * rejects writes of users with {@code 409 Conflict} and reports its lag on every read.
+ */
+@Configuration
+public class ReplicationConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "user.replication.role", havingValue = "leader")
+    public UserReplicationLog userReplicationLog(UserStore userStore,
+                                                 @Value("${user.replication.log-retention}") int retention) {
+        return UserReplicationLog.of(userStore, retention);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    @ConditionalOnProperty(name = "user.replication.role", havingValue = "follower")
+    public UserReplicationFollower userReplicationFollower(
+            UserStore userStore,
+            @Value("${user.replication.leader-url}") String leaderUrl,
+            @Value("${user.replication.batch-size}") int batchSize,
+            @Value("${user.replication.poll-wait}") Duration pollWait,
+            @Value("${user.replication.retry-interval}") Duration retryInterval,
+            @Value("${user.persistence.enabled}") boolean persistenceEnabled,
+            @Value("${user.persistence.directory}") Path persistenceDirectory) {
+        // the position is only worth keeping if the store it describes survives a restart
+        Path positionFile = persistenceEnabled ? persistenceDirectory.resolve("replication.position") : null;
+        return new UserReplicationFollower(userStore, leaderUrl, positionFile, batchSize, pollWait, retryInterval);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "user.replication.role", havingValue = "follower")
+    public WebMvcConfigurer followerWebMvcConfigurer(UserReplicationFollower userReplicationFollower,
+                                                     @Value("${user.replication.leader-url}") String leaderUrl) {
+        HandlerInterceptor interceptor = new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                HttpMethod method = HttpMethod.valueOf(request.getMethod());
+                if (method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            "This instance is a read replica, send writes to " + leaderUrl);
+                }
+                userReplicationFollower.getLagMillis().ifPresent(lagMillis ->
+                        response.setHeader(UserReplicationProtocol.LAG_HEADER, String.valueOf(lagMillis)));
+                return true;
+            }
+        };
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor).addPathPatterns("/api/users", "/api/users/**", "/api/reactive/users", "/api/reactive/users/**");
+            }
+        };
+    }
+}
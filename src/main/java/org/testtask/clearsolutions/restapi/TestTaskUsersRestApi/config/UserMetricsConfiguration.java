@@ -0,0 +1,100 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserResponseCache;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationFollower;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationLog;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ShardedUserStore;
+
+import java.util.List;
+
+/**
+ * Metrics of the user directory on top of the request metrics of Spring Boot: timers of the {@code @Timed} service
+ * methods, gauges of the store and, when enabled, counters and gauges of the response cache and of replication,
+ * which are only read when the metrics are scraped.
+ */
+@Configuration
+public class UserMetricsConfiguration {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterBinder userStoreMetrics(UserStore userStore) {
+        return meterRegistry -> {
+            Gauge.builder("users.store.size", userStore, UserStore::size)
+                    .description("Number of stored users")
+                    .register(meterRegistry);
+            for (String index : userStore.getIndexSizes().keySet()) {
+                Gauge.builder("users.store.index.entries", userStore, store -> store.getIndexSizes().get(index))
+                        .description("Number of entries of a store index")
+                        .tag("index", index)
+                        .register(meterRegistry);
+            }
+            List<ColumnarUserStore> columnarStores = (userStore instanceof ShardedUserStore shardedUserStore
+                    ? shardedUserStore.getShards() : List.of(userStore)).stream()
+                    .filter(ColumnarUserStore.class::isInstance)
+                    .map(ColumnarUserStore.class::cast)
+                    .toList();
+            if (!columnarStores.isEmpty()) {
+                Gauge.builder("users.store.off.heap", columnarStores,
+                                stores -> stores.stream().mapToLong(ColumnarUserStore::getOffHeapBytes).sum())
+                        .description("Off-heap memory held by the string columns")
+                        .baseUnit("bytes")
+                        .register(meterRegistry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder userResponseCacheMetrics(ObjectProvider<UserResponseCache> userResponseCache) {
+        return meterRegistry -> userResponseCache.ifAvailable(cache -> {
+            FunctionCounter.builder("users.response.cache.gets", cache, UserResponseCache::getHitCount)
+                    .description("Reads of a user by id served from the response cache")
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("users.response.cache.gets", cache, UserResponseCache::getMissCount)
+                    .description("Reads of a user by id that serialized and cached the response")
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+            FunctionCounter.builder("users.response.cache.evictions", cache, UserResponseCache::getEvictionCount)
+                    .description("Responses evicted to keep the cache within its size")
+                    .register(meterRegistry);
+            Gauge.builder("users.response.cache.size", cache, UserResponseCache::size)
+                    .description("Number of cached responses")
+                    .register(meterRegistry);
+            Gauge.builder("users.response.cache.bytes", cache, UserResponseCache::getBytes)
+                    .description("Size of the cached response bodies")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+        });
+    }
+
+    @Bean
+    public MeterBinder userReplicationMetrics(ObjectProvider<UserReplicationLog> userReplicationLog,
+                                              ObjectProvider<UserReplicationFollower> userReplicationFollower) {
+        return meterRegistry -> {
+            userReplicationLog.ifAvailable(log ->
+                    Gauge.builder("users.replication.offset", log, replicationLog -> replicationLog.getPosition().offset())
+                            .description("Offset of the latest mutation in the replication log")
+                            .register(meterRegistry));
+            userReplicationFollower.ifAvailable(follower ->
+                    Gauge.builder("users.replication.lag", follower,
+                                    replicationFollower -> replicationFollower.getLagMillis().orElse(-1))
+                            .description("How far this follower is behind its leader, -1 until it reached the leader")
+                            .baseUnit("milliseconds")
+                            .register(meterRegistry));
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.mediatype.hal.HalMediaTypeConfiguration;
+import org.springframework.util.unit.DataSize;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserResponseCache;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+@Configuration
+@ConditionalOnProperty(name = "user.cache.enabled", havingValue = "true")
+public class UserResponseCacheConfiguration {
+
+    @Bean
+    public UserResponseCache userResponseCache(UserStore userStore, ObjectMapper objectMapper,
+                                               HalMediaTypeConfiguration halMediaTypeConfiguration,
+                                               @Value("${user.cache.max-size}") DataSize maxSize,
+                                               @Value("${user.cache.gzip}") boolean gzip) {
+        // the same HAL mapper the message converters use, so cached bodies match the uncached ones
+        ObjectMapper halObjectMapper = halMediaTypeConfiguration.configureObjectMapper(objectMapper.copy());
+        UserResponseCache userResponseCache = new UserResponseCache(halObjectMapper, maxSize.toBytes(), gzip);
+        userStore.addListener(userResponseCache);
+        return userResponseCache;
+    }
+}
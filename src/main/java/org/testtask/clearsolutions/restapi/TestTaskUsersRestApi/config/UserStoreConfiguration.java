@@ -0,0 +1,69 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserStorePersistence;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserWriteAheadLog;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserBirthDateStatistics;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserPrefixIndex;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ShardedUserStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+@Configuration
+public class UserStoreConfiguration {
+
+    public enum UserStoreType {
+        HEAP, COLUMNAR
+    }
+
+    @Bean
+    public UserStore userStore(@Value("${user.store.type}") UserStoreType userStoreType,
+                               @Value("${user.store.shards}") int shards,
+                               ObjectProvider<UserStorePersistence> userStorePersistence) {
+        Supplier<UserStore> storeFactory = switch (userStoreType) {
+            case HEAP -> InMemoryUserStore::new;
+            case COLUMNAR -> ColumnarUserStore::new;
+        };
+        UserStore userStore = shards > 1 ? new ShardedUserStore(shards, storeFactory) : storeFactory.get();
+        // recovery has to finish before anything else, such as the demo data seeding, touches the store
+        userStorePersistence.ifAvailable(persistence -> {
+            try {
+                persistence.recover(userStore);
+            } catch (IOException exception) {
+                throw new UncheckedIOException("Could not recover users from disk", exception);
+            }
+        });
+        return userStore;
+    }
+
+    @Bean
+    public UserPrefixIndex userPrefixIndex(UserStore userStore) {
+        return UserPrefixIndex.of(userStore);
+    }
+
+    @Bean
+    public UserBirthDateStatistics userBirthDateStatistics(UserStore userStore) {
+        return UserBirthDateStatistics.of(userStore);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "user.persistence.enabled", havingValue = "true")
+    public UserStorePersistence userStorePersistence(
+            @Value("${user.persistence.directory}") Path directory,
+            @Value("${user.persistence.fsync}") UserWriteAheadLog.FsyncPolicy fsyncPolicy,
+            @Value("${user.persistence.fsync-interval}") Duration fsyncInterval,
+            @Value("${user.persistence.snapshot-interval}") Duration snapshotInterval) throws IOException {
+        return new UserStorePersistence(directory, fsyncPolicy, fsyncInterval, snapshotInterval);
+    }
+}
@@ -0,0 +1,22 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code spring.threads.virtual.enabled}, Spring Boot serves requests and runs async request processing, such
+ * as imports, on virtual threads, but silently keeps platform threads below Java 21. This fails the startup instead.
+ * The stores and the write-ahead log only block on {@code java.util.concurrent} locks, which unmount a waiting
+ * virtual thread instead of pinning its carrier.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfiguration {
+
+    public VirtualThreadsConfiguration() {
+        if (Runtime.version().feature() < 21) {
+            throw new IllegalStateException("spring.threads.virtual.enabled requires Java 21 or later, running on Java "
+                    + Runtime.version());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserDto;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserMapper;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserNotFoundException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.ReactiveUserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller.UserController.*;
+
+/**
+ * Reactive edition of {@link UserController} over the same users. Collections are streamed as NDJSON, one HAL user
+ * per line, and are read from the store only as fast as the client consumes them. Self links point to the users
+ * of {@link UserController}.
+ */
+@RestController
+@RequestMapping("/api/reactive/users")
+public class ReactiveUserController {
+
+    private final ReactiveUserService reactiveUserService;
+
+    public ReactiveUserController(ReactiveUserService reactiveUserService) {
+        this.reactiveUserService = reactiveUserService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<UserResource>> createUser(@RequestBody UserDto userDto) {
+        // links are resolved from the request, which is no longer bound to the thread that completes the Mono
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        return reactiveUserService.createUser(UserMapper.INSTANCE.toUser(userDto))
+                .map(user -> ResponseEntity.status(HttpStatus.CREATED).body(userLinkFactory.toResource(user)));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<UserResource>> getUser(@PathVariable long id,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        MediaType mediaType = negotiatedType(accept);
+        return findExistingUser(id)
+                .map(user -> ResponseEntity.ok().eTag(UserETags.of(user, mediaType)).body(userLinkFactory.toResource(user)));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<UserResource>> updateUser(@PathVariable long id, @RequestBody UserDto userDto,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        MediaType mediaType = negotiatedType(accept);
+        User user = UserMapper.INSTANCE.toUser(userDto);
+        return expectedVersion(id, ifMatch)
+                .flatMap(expectedVersion -> reactiveUserService.updateUserById(id, user, expectedVersion))
+                .map(updatedUser -> ResponseEntity.ok().eTag(UserETags.of(updatedUser, mediaType)).body(userLinkFactory.toResource(updatedUser)));
+    }
+
+    @PatchMapping(path = "/{id}", consumes = JSON_PATCH_VALUE)
+    public Mono<ResponseEntity<UserResource>> updateUser(@PathVariable long id, @RequestBody JsonNode patch,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return patchUser(id, UserPatch.fromJsonPatch(patch), ifMatch, accept);
+    }
+
+    @PatchMapping(path = "/{id}", consumes = MERGE_PATCH_VALUE)
+    public Mono<ResponseEntity<UserResource>> mergeUser(@PathVariable long id, @RequestBody JsonNode patch,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return patchUser(id, UserPatch.fromMergePatch(patch), ifMatch, accept);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteUser(@PathVariable long id) {
+        return reactiveUserService.deleteUserById(id)
+                .then(Mono.fromSupplier(() -> ResponseEntity.ok().<Void>build()));
+    }
+
+    @GetMapping(produces = NDJSON_VALUE)
+    public Flux<UserResource> getAllUsers() {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        return reactiveUserService.getAllUsers().map(userLinkFactory::toResource);
+    }
+
+    @GetMapping(path = "/search", produces = NDJSON_VALUE)
+    public Flux<UserResource> getUsersByBirthDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        return reactiveUserService.getUsersByBirthDateRange(from, to).map(userLinkFactory::toResource);
+    }
+
+    private Mono<ResponseEntity<UserResource>> patchUser(long id, UserPatch patch, String ifMatch, String accept) {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        MediaType mediaType = negotiatedType(accept);
+        return expectedVersion(id, ifMatch)
+                .flatMap(expectedVersion -> reactiveUserService.patchUserById(id, patch, expectedVersion))
+                .map(updatedUser -> ResponseEntity.ok().eTag(UserETags.of(updatedUser, mediaType)).body(userLinkFactory.toResource(updatedUser)));
+    }
+
+    private Mono<Long> expectedVersion(long id, String ifMatch) {
+        if (ifMatch == null) {
+            return Mono.just(UserStore.ANY_VERSION);
+        }
+        return findExistingUser(id).map(currentUser -> UserETags.expectedVersion(ifMatch, currentUser));
+    }
+
+    private Mono<User> findExistingUser(long id) {
+        return reactiveUserService.findUserById(id)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException("User with id " + id + " not found")));
+    }
+}
@@ -0,0 +1,118 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.ReplicationStatus;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationFollower;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationLog;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationProtocol;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication.UserReplicationRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The leader's side of replication, {@code /log} and {@code /snapshot}, which answer in the binary format of
+ * {@link UserReplicationProtocol}, and the replication status of any instance.
+ */
+@RestController
+@RequestMapping("/api/replication")
+public class ReplicationController {
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    private final UserReplicationLog userReplicationLog;
+    private final UserReplicationFollower userReplicationFollower;
+
+    public ReplicationController(ObjectProvider<UserReplicationLog> userReplicationLog,
+                                 ObjectProvider<UserReplicationFollower> userReplicationFollower) {
+        this.userReplicationLog = userReplicationLog.getIfAvailable();
+        this.userReplicationFollower = userReplicationFollower.getIfAvailable();
+    }
+
+    /**
+     * Returns up to {@code limit} log records after offset {@code after} of log {@code log}, waiting up to
+     * {@code wait} milliseconds for one. Answers {@code 410 Gone} when the log does not have them anymore.
+     */
+    @GetMapping("/log")
+    public ResponseEntity<byte[]> getLog(@RequestParam("log") String logId, @RequestParam("after") long afterOffset,
+                                         @RequestParam(value = "limit", defaultValue = "${user.replication.batch-size}") int limit,
+                                         @RequestParam(value = "wait", defaultValue = "0") long waitMillis)
+            throws IOException {
+        UserReplicationLog replicationLog = requireLog();
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        Duration wait = Duration.ofMillis(Math.max(0, Math.min(waitMillis, MAX_WAIT.toMillis())));
+        List<UserReplicationRecord> records;
+        try {
+            records = replicationLog.read(logId, afterOffset, limit, wait)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.GONE,
+                            "Log " + logId + " does not have the records after offset " + afterOffset));
+        } catch (InterruptedException exception) {
+            // the server is shutting down
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Replication log is shutting down");
+        }
+        UserReplicationLog.Position position = replicationLog.getPosition();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        UserReplicationProtocol.writeRecords(new DataOutputStream(body), records);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(UserReplicationProtocol.LOG_ID_HEADER, position.logId())
+                .header(UserReplicationProtocol.OFFSET_HEADER, String.valueOf(position.offset()))
+                .body(body.toByteArray());
+    }
+
+    /**
+     * Streams all users, with the log id and offset that the follower continues from in the headers.
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> getSnapshot() {
+        UserReplicationLog replicationLog = requireLog();
+        // read before copying the users, so the copy reflects every record up to this offset
+        UserReplicationLog.Position position = replicationLog.getPosition();
+        StreamingResponseBody body = outputStream -> {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+            replicationLog.writeSnapshot(output);
+            output.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(UserReplicationProtocol.LOG_ID_HEADER, position.logId())
+                .header(UserReplicationProtocol.OFFSET_HEADER, String.valueOf(position.offset()))
+                .body(body);
+    }
+
+    @GetMapping("/status")
+    public ReplicationStatus getStatus() {
+        if (userReplicationLog != null) {
+            UserReplicationLog.Position position = userReplicationLog.getPosition();
+            return ReplicationStatus.leader(position.logId(), position.offset());
+        }
+        if (userReplicationFollower != null) {
+            return userReplicationFollower.getStatus();
+        }
+        return ReplicationStatus.none();
+    }
+
+    private UserReplicationLog requireLog() {
+        if (userReplicationLog == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This instance is not a replication leader");
+        }
+        return userReplicationLog;
+    }
+}
@@ -1,31 +1,49 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.JsonPatchException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.Link;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.validation.BindingResult;
-import org.springframework.validation.FieldError;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserDto;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserMapper;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserNotFoundException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserImportService;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -34,59 +52,114 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RequestMapping("/api/users")
 public class UserController {
 
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String JSON_PATCH_VALUE = "application/json-patch+json";
+    public static final String MERGE_PATCH_VALUE = "application/merge-patch+json";
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    // the types a user is written as, in the order of the message converters, see BinaryFormatsConfiguration
+    private static final List<MediaType> USER_MEDIA_TYPES = List.of(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON,
+            MediaType.parseMediaType(SMILE_VALUE), MediaType.APPLICATION_CBOR);
+
     private final UserService userService;
+    private final UserImportService userImportService;
     private final ObjectMapper objectMapper;
+    private final UserResponseCache userResponseCache;
 
     @Autowired
-    public UserController(UserService userService, ObjectMapper objectMapper) {
+    public UserController(UserService userService, UserImportService userImportService, ObjectMapper objectMapper,
+                          ObjectProvider<UserResponseCache> userResponseCache) {
         this.userService = userService;
+        this.userImportService = userImportService;
         this.objectMapper = objectMapper;
+        this.userResponseCache = userResponseCache.getIfAvailable();
     }
 
     @PostMapping
-    public ResponseEntity<UserResource> createUser(@Valid @RequestBody UserDto userDto, BindingResult result) {
-        if (result.hasErrors()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provided User has errors: " + getBindingResultErrorMessages(result));
-        }
+    public ResponseEntity<UserResource> createUser(@RequestBody UserDto userDto) {
+        // validated once, by the service
         User createdUser = userService.createUser(UserMapper.INSTANCE.toUser(userDto));
-        UserResource userResource = new UserResource(createdUser);
-        Link selfLink = linkTo(methodOn(UserController.class).getUser(createdUser.getId())).withSelfRel();
-        userResource.add(selfLink);
-        return ResponseEntity.status(HttpStatus.CREATED).body(userResource);
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserLinkFactory.forCurrentRequest().toResource(createdUser));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<CollectionModel<UserResource>> createUsers(@RequestBody List<UserDto> userDtos) {
+        List<User> users = new ArrayList<>(userDtos.size());
+        for (UserDto userDto : userDtos) {
+            users.add(userDto == null ? null : UserMapper.INSTANCE.toUser(userDto));
+        }
+        List<User> createdUsers = userService.createUsers(users);
+        Link link = linkTo(UserController.class).withSelfRel();
+        return ResponseEntity.status(HttpStatus.CREATED).body(CollectionModel.of(toUserResources(createdUsers), link));
+    }
+
+    @PostMapping(path = "/import", consumes = NDJSON_VALUE, produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importUsers(InputStream ndjson) {
+        ObjectWriter progressWriter = objectMapper.writerFor(UserImportProgress.class);
+        StreamingResponseBody body = outputStream -> userImportService.importUsers(ndjson, progress -> {
+            try {
+                outputStream.write(progressWriter.writeValueAsBytes(progress));
+                outputStream.write('\n');
+                outputStream.flush();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserResource> getUser(@PathVariable long id) {
+    public ResponseEntity<?> getUser(@PathVariable long id, WebRequest webRequest) {
         User user = userService.findUserById(id)
                 .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
-        UserResource userResource = new UserResource(user);
-        Link selfLink = linkTo(UserController.class).slash(id).withSelfRel();
-        userResource.add(selfLink);
-        return ResponseEntity.ok(userResource);
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        MediaType mediaType = negotiatedType(webRequest.getHeader(HttpHeaders.ACCEPT));
+        if (userResponseCache == null) {
+            return ResponseEntity.ok().eTag(UserETags.of(user, mediaType)).body(userLinkFactory.toResource(user));
+        }
+        // whether the cached HAL body is served depends on the request, so shared caches must key on it
+        if (!MediaTypes.HAL_JSON.equals(mediaType)) {
+            return ResponseEntity.ok().eTag(UserETags.of(user, mediaType)).varyBy(HttpHeaders.ACCEPT).body(userLinkFactory.toResource(user));
+        }
+        UserResponseCache.Entry entry = userResponseCache.get(user, userLinkFactory);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaTypes.HAL_JSON)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (entry.gzip != null && acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.eTag(UserETags.ofGzip(user, mediaType)).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip);
+        }
+        return response.eTag(UserETags.of(user, mediaType)).body(entry.json);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<UserResource> updateUser(@PathVariable long id, @Valid @RequestBody UserDto userDto, BindingResult result) {
-        if (result.hasErrors()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provided User has errors: " + getBindingResultErrorMessages(result));
+    public ResponseEntity<UserResource> updateUser(@PathVariable long id, @RequestBody UserDto userDto,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        User user = UserMapper.INSTANCE.toUser(userDto);
+        User updatedUser;
+        if (ifMatch == null) {
+            updatedUser = userService.updateUserById(id, user);
+        } else {
+            User currentUser = userService.findUserById(id)
+                    .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+            updatedUser = userService.updateUserById(id, user, UserETags.expectedVersion(ifMatch, currentUser));
         }
-        User updatedUser = userService.updateUserById(id, UserMapper.INSTANCE.toUser(userDto));
-        UserResource userResource = new UserResource(updatedUser);
-        Link selfLink = linkTo(methodOn(UserController.class).getUser(id)).withSelfRel();
-        userResource.add(selfLink);
-        return ResponseEntity.ok(userResource);
+        return ResponseEntity.ok().eTag(UserETags.of(updatedUser, negotiatedType(accept)))
+                .body(UserLinkFactory.forCurrentRequest().toResource(updatedUser));
     }
 
-    @PatchMapping(path = "/{id}", consumes = "application/json-patch+json")
-    public ResponseEntity<UserResource> updateUser(@PathVariable long id, @RequestBody JsonPatch patch) throws JsonPatchException, JsonProcessingException {
-        User user = userService.findUserById(id)
-                .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
-        User patchedUser = applyPatchToUser(patch, user);
-        userService.updateUserById(id, patchedUser);
-        UserResource userResource = new UserResource(patchedUser);
-        Link selfLink = linkTo(methodOn(UserController.class).getUser(id)).withSelfRel();
-        userResource.add(selfLink);
-        return ResponseEntity.ok(userResource);
+    @PatchMapping(path = "/{id}", consumes = JSON_PATCH_VALUE)
+    public ResponseEntity<UserResource> updateUser(@PathVariable long id, @RequestBody JsonNode patch,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return patchUser(id, UserPatch.fromJsonPatch(patch), ifMatch, accept);
+    }
+
+    @PatchMapping(path = "/{id}", consumes = MERGE_PATCH_VALUE)
+    public ResponseEntity<UserResource> mergeUser(@PathVariable long id, @RequestBody JsonNode patch,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return patchUser(id, UserPatch.fromMergePatch(patch), ifMatch, accept);
     }
 
     @DeleteMapping("/{id}")
@@ -96,48 +169,140 @@ public class UserController {
     }
 
     @GetMapping
-    public ResponseEntity<CollectionModel<UserResource>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        List<UserResource> userResources = users.stream()
-                .map(user -> {
-                    UserResource userResource = new UserResource(user);
-                    Link selfLink = linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel();
-                    userResource.add(selfLink);
-                    return userResource;
-                })
-                .toList();
-        Link link = linkTo(UserController.class).withSelfRel();
-        return ResponseEntity.ok(CollectionModel.of(userResources, link));
+    public ResponseEntity<CollectionModel<UserResource>> getAllUsers(
+            @RequestParam(defaultValue = "${user.page.default-limit}") int limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
+        // read before the query: a change racing with it yields a newer tag on the next request, never a stale 304
+        String eTag = UserETags.ofCollection(userService.getModificationCount());
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        UserPage page = userService.getUsers(cursor, limit);
+        Link link = linkTo(methodOn(UserController.class).getAllUsers(limit, cursor, null)).withSelfRel();
+        CollectionModel<UserResource> collectionModel = CollectionModel.of(toUserResources(page.users()), link);
+        if (page.hasNext()) {
+            collectionModel.add(linkTo(methodOn(UserController.class).getAllUsers(limit, page.nextCursor(), null)).withRel(IanaLinkRelations.NEXT));
+        }
+        return ResponseEntity.ok().eTag(eTag).body(collectionModel);
+    }
+
+    @GetMapping(path = "/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        ObjectWriter userWriter = objectMapper.writerFor(User.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<User> users = userService.streamUsers();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                Iterator<User> iterator = users.iterator();
+                while (iterator.hasNext()) {
+                    userWriter.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_VALUE)).body(body);
     }
 
     @GetMapping("/search")
     public ResponseEntity<CollectionModel<UserResource>> getUsersByBirthDateRange(
             @RequestParam @Valid @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @Valid @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
-        List<User> foundUsers = userService.getUsersByBirthDateRange(from, to);
-        List<UserResource> userResources = foundUsers.stream()
-                .map(user -> {
-                    UserResource userResource = new UserResource(user);
-                    Link selfLink = linkTo(methodOn(UserController.class).getUser(user.getId())).withSelfRel();
-                    userResource.add(selfLink);
-                    return userResource;
-                })
+            @RequestParam @Valid @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "${user.page.default-limit}") int limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest webRequest) {
+        String eTag = UserETags.ofCollection(userService.getModificationCount());
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        UserPage page = userService.getUsersByBirthDateRange(from, to, cursor, limit);
+        Link link = linkTo(methodOn(UserController.class).getUsersByBirthDateRange(from, to, limit, cursor, null)).withSelfRel();
+        CollectionModel<UserResource> collectionModel = CollectionModel.of(toUserResources(page.users()), link);
+        if (page.hasNext()) {
+            collectionModel.add(linkTo(methodOn(UserController.class).getUsersByBirthDateRange(from, to, limit, page.nextCursor(), null)).withRel(IanaLinkRelations.NEXT));
+        }
+        return ResponseEntity.ok().eTag(eTag).body(collectionModel);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<UserStats> getStats() {
+        return ResponseEntity.ok(userService.getStats());
+    }
+
+    @GetMapping(path = "/search", params = "q")
+    public ResponseEntity<CollectionModel<UserResource>> searchUsers(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "${user.search.default-limit}") int limit,
+            WebRequest webRequest) {
+        String eTag = UserETags.ofCollection(userService.getModificationCount());
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        List<User> users = userService.searchUsers(q, limit);
+        Link link = linkTo(methodOn(UserController.class).searchUsers(q, limit, null)).withSelfRel();
+        return ResponseEntity.ok().eTag(eTag).body(CollectionModel.of(toUserResources(users), link));
+    }
+
+    private List<UserResource> toUserResources(List<User> users) {
+        UserLinkFactory userLinkFactory = UserLinkFactory.forCurrentRequest();
+        return users.stream()
+                .map(userLinkFactory::toResource)
                 .toList();
+    }
 
-        Link link = linkTo(methodOn(UserController.class).getUsersByBirthDateRange(from, to)).withSelfRel();
-        return ResponseEntity.ok(CollectionModel.of(userResources, link));
+    /**
+     * The type content negotiation writes a user as: of the accepted types, ordered by quality and then specificity,
+     * the first that a user can be written as, taking the first user type a wildcard matches. Returns {@code null}
+     * if the header is invalid or accepts none of them, which content negotiation then rejects.
+     */
+    static MediaType negotiatedType(String accept) {
+        if (accept == null) {
+            return MediaTypes.HAL_JSON;
+        }
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            MimeTypeUtils.sortBySpecificity(acceptedTypes);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException exception) {
+            return null;
+        }
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                break;
+            }
+            for (MediaType userType : USER_MEDIA_TYPES) {
+                if (acceptedType.isCompatibleWith(userType)) {
+                    return userType;
+                }
+            }
+        }
+        return null;
     }
 
-    private List<String> getBindingResultErrorMessages(BindingResult result) {
-        List<String> errorMessages = new ArrayList<>();
-        for (FieldError error : result.getFieldErrors()) {
-            errorMessages.add(error.getDefaultMessage());
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
         }
-        return errorMessages;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            if (parameters[0].trim().equalsIgnoreCase("gzip")) {
+                return parameters.length == 1 || !parameters[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
-    private User applyPatchToUser(JsonPatch patch, User targetUser) throws JsonPatchException, JsonProcessingException {
-        JsonNode patched = patch.apply(objectMapper.convertValue(targetUser, JsonNode.class));
-        return objectMapper.treeToValue(patched, User.class);
+    private ResponseEntity<UserResource> patchUser(long id, UserPatch patch, String ifMatch, String accept) {
+        long expectedVersion = UserStore.ANY_VERSION;
+        if (ifMatch != null) {
+            User currentUser = userService.findUserById(id)
+                    .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+            expectedVersion = UserETags.expectedVersion(ifMatch, currentUser);
+        }
+        User updatedUser = userService.patchUserById(id, patch, expectedVersion);
+        return ResponseEntity.ok().eTag(UserETags.of(updatedUser, negotiatedType(accept)))
+                .body(UserLinkFactory.forCurrentRequest().toResource(updatedUser));
     }
 }
@@ -0,0 +1,61 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import org.springframework.http.MediaType;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+/**
+ * Entity tags derived from store versions, so a conditional request is answered without serializing anything.
+ * <p>
+ * A user's tag is its version together with the media type and content coding of the representation, so that
+ * each representation has a strong tag of its own. Ids of deleted users may be handed out again after a restart,
+ * starting over at version 1, and collection tags come from the store-wide modification count, which restarts
+ * with the application, so every tag also carries the start time of this instance.
+ */
+final class UserETags {
+
+    private static final String INSTANCE_PREFIX = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private UserETags() {
+    }
+
+    /**
+     * Returns the tag of the user written as {@code mediaType}, or of any representation if it is {@code null}.
+     */
+    static String of(User user, MediaType mediaType) {
+        return versionPrefix(user) + (mediaType == null ? "*" : mediaType.getSubtype()) + "\"";
+    }
+
+    static String ofGzip(User user, MediaType mediaType) {
+        return versionPrefix(user) + mediaType.getSubtype() + "-gzip\"";
+    }
+
+    static String ofCollection(long modificationCount) {
+        return "\"" + INSTANCE_PREFIX + modificationCount + "\"";
+    }
+
+    /**
+     * Returns the version an update must find in the store to satisfy the {@code If-Match} header, or
+     * {@link UserStore#ANY_VERSION} for {@code *}. A tag of any representation of the current version matches.
+     * Weak tags never match, as required for {@code If-Match}.
+     */
+    static long expectedVersion(String ifMatch, User currentUser) {
+        String currentPrefix = versionPrefix(currentUser);
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return UserStore.ANY_VERSION;
+            }
+            if (tag.startsWith(currentPrefix) && tag.endsWith("\"") && tag.length() > currentPrefix.length()) {
+                return currentUser.getVersion();
+            }
+        }
+        throw new UserVersionMismatchException("User with id " + currentUser.getId() + " has ETag "
+                + of(currentUser, null) + ", which does not match " + ifMatch);
+    }
+
+    private static String versionPrefix(User user) {
+        return "\"" + INSTANCE_PREFIX + user.getVersion() + "-";
+    }
+}
@@ -0,0 +1,38 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import org.springframework.hateoas.Link;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+
+import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
+
+/**
+ * Builds user self links for one request. The users collection URI is resolved from the request once, and each
+ * self link only appends the id to it, instead of proxying a controller call and parsing the request URI per user.
+ */
+public final class UserLinkFactory {
+
+    private final String usersUri;
+
+    private UserLinkFactory(String usersUri) {
+        this.usersUri = usersUri;
+    }
+
+    public static UserLinkFactory forCurrentRequest() {
+        return new UserLinkFactory(linkTo(UserController.class).toUri().toString());
+    }
+
+    String getUsersUri() {
+        return usersUri;
+    }
+
+    public Link selfLink(long id) {
+        return Link.of(usersUri + "/" + id);
+    }
+
+    public UserResource toResource(User user) {
+        UserResource userResource = new UserResource(user);
+        userResource.add(selfLink(user.getId()));
+        return userResource;
+    }
+}
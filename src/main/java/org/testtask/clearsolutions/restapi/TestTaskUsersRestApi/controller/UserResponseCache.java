@@ -0,0 +1,217 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.resource.UserResource;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized HAL bodies of users read by id, so repeated reads of a user skip building and serializing its resource.
+ * An entry holds the body of one version of a user under one users URI and is only served for that version, so an
+ * entry put by a read racing with an update is never served; updates and deletes drop entries right away to free
+ * their memory. Once the bodies exceed {@code maxBytes}, entries are evicted in insertion order, except that an
+ * entry read since the eviction last passed it gets a second chance, which keeps hits free of locks. Dropped and
+ * replaced entries stay in the eviction queue until it is purged, once they outnumber the cached ones.
+ */
+public class UserResponseCache implements UserStoreListener {
+
+    private static final int MIN_PURGED_ENTRIES = 64;
+
+    private final ObjectWriter halWriter;
+    private final long maxBytes;
+    private final boolean gzip;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param halObjectMapper the mapper that renders {@link UserResource} as {@code application/hal+json}
+     * @param gzip            whether to keep a gzip-compressed copy of each body as well
+     */
+    public UserResponseCache(ObjectMapper halObjectMapper, long maxBytes, boolean gzip) {
+        this.halWriter = halObjectMapper.writerFor(UserResource.class);
+        this.maxBytes = maxBytes;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Returns the cached body of this version of the user, serializing and caching it on a miss.
+     */
+    Entry get(User user, UserLinkFactory userLinkFactory) {
+        Entry entry = entries.get(user.getId());
+        if (entry != null && entry.version == user.getVersion() && entry.usersUri.equals(userLinkFactory.getUsersUri())) {
+            entry.referenced = true;
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        byte[] json = serialize(userLinkFactory.toResource(user));
+        entry = new Entry(user.getId(), user.getVersion(), userLinkFactory.getUsersUri(), json, gzip ? compress(json) : null);
+        Entry previous = entries.put(entry.id, entry);
+        bytes.addAndGet(entry.size() - (previous == null ? 0 : previous.size()));
+        offer(entry);
+        evict();
+        purgeIfMostlyStale();
+        return entry;
+    }
+
+    @Override
+    public void onInsert(User user) {
+    }
+
+    @Override
+    public void onUpdate(User previousUser, User user) {
+        remove(user.getId());
+    }
+
+    @Override
+    public void onDelete(User user) {
+        remove(user.getId());
+    }
+
+    @Override
+    public void onLoad(Collection<User> users) {
+        // the loaded users may reuse ids and versions of cached ones
+        entries.keySet().forEach(this::remove);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the size of the cached bodies, without the bookkeeping of the entries.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    int getQueueLength() {
+        return queueLength.get();
+    }
+
+    private void offer(Entry entry) {
+        evictionQueue.offer(entry);
+        queueLength.incrementAndGet();
+    }
+
+    private void evict() {
+        while (bytes.get() > maxBytes) {
+            Entry entry = evictionQueue.poll();
+            if (entry == null) {
+                return;
+            }
+            queueLength.decrementAndGet();
+            if (entries.get(entry.id) != entry) {
+                // replaced or invalidated since it was queued
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                offer(entry);
+            } else if (entries.remove(entry.id, entry)) {
+                bytes.addAndGet(-entry.size());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops the entries that are no longer cached from the eviction queue once there are more of them than cached
+     * entries, which keeps the queue within a constant factor of the cache however often users change.
+     */
+    private void purgeIfMostlyStale() {
+        if (queueLength.get() <= 2 * entries.size() + MIN_PURGED_ENTRIES || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            evictionQueue.removeIf(entry -> entries.get(entry.id) != entry);
+            // recounted rather than tracked per removal, which the queue does not report reliably under races
+            queueLength.set(evictionQueue.size());
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    private void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            bytes.addAndGet(-entry.size());
+        }
+    }
+
+    private byte[] serialize(UserResource userResource) {
+        try {
+            return halWriter.writeValueAsBytes(userResource);
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2);
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+            gzipStream.write(json);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return compressed.toByteArray();
+    }
+
+    static final class Entry {
+
+        final long id;
+        final long version;
+        final String usersUri;
+        final byte[] json;
+        /** {@code null} unless the cache keeps compressed bodies */
+        final byte[] gzip;
+
+        volatile boolean referenced;
+
+        Entry(long id, long version, String usersUri, byte[] json, byte[] gzip) {
+            this.id = id;
+            this.version = version;
+            this.usersUri = usersUri;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        long size() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Changes of individual user fields, parsed from a JSON Patch (RFC 6902) or a JSON Merge Patch (RFC 7396)
+ * document. Paths are resolved to {@link User} fields once while parsing, and applying the patch copies the user
+ * and sets just those fields, instead of converting the user to a JSON tree and back. Invalid documents are
+ * rejected with an {@link IllegalArgumentException}.
+ */
+public final class UserPatch {
+
+    private final List<Operation> operations;
+    private final Set<String> touchedFields;
+
+    private UserPatch(List<Operation> operations) {
+        this.operations = operations;
+        Set<String> fields = new LinkedHashSet<>();
+        for (Operation operation : operations) {
+            if (!operation.type().equals("test")) {
+                fields.add(operation.field().name);
+            }
+            if (operation.type().equals("move")) {
+                fields.add(operation.from().name);
+            }
+        }
+        this.touchedFields = Collections.unmodifiableSet(fields);
+    }
+
+    public static UserPatch fromJsonPatch(JsonNode document) {
+        if (document == null || !document.isArray()) {
+            throw new IllegalArgumentException("JSON Patch must be an array of operations");
+        }
+        List<Operation> operations = new ArrayList<>(document.size());
+        for (JsonNode operationNode : document) {
+            String type = operationNode.path("op").asText();
+            Field field = Field.ofPath(operationNode.path("path").asText(null));
+            switch (type) {
+                case "add", "replace" -> operations.add(new Operation(type, writable(field), null, field.parse(valueOf(operationNode))));
+                case "remove" -> operations.add(new Operation(type, writable(field), null, null));
+                case "test" -> operations.add(new Operation(type, field, null, field.parse(valueOf(operationNode))));
+                case "copy", "move" -> {
+                    Field from = Field.ofPath(operationNode.path("from").asText(null));
+                    if (from.type != field.type) {
+                        throw new IllegalArgumentException("Cannot " + type + " " + from.path() + " to " + field.path());
+                    }
+                    operations.add(new Operation(type, writable(field), type.equals("move") ? writable(from) : from, null));
+                }
+                default -> throw new IllegalArgumentException("Unsupported JSON Patch operation " + operationNode.path("op"));
+            }
+        }
+        return new UserPatch(operations);
+    }
+
+    public static UserPatch fromMergePatch(JsonNode document) {
+        if (document == null || !document.isObject()) {
+            throw new IllegalArgumentException("JSON Merge Patch must be an object");
+        }
+        List<Operation> operations = new ArrayList<>(document.size());
+        Iterator<Map.Entry<String, JsonNode>> members = document.fields();
+        while (members.hasNext()) {
+            Map.Entry<String, JsonNode> member = members.next();
+            Field field = writable(Field.ofName(member.getKey()));
+            operations.add(member.getValue().isNull()
+                    ? new Operation("remove", field, null, null)
+                    : new Operation("replace", field, null, field.parse(member.getValue())));
+        }
+        return new UserPatch(operations);
+    }
+
+    /**
+     * Names of the fields the patch may change; only these need to be validated again.
+     */
+    public Set<String> getTouchedFields() {
+        return touchedFields;
+    }
+
+    /**
+     * Returns a patched copy of the user, leaving the given user unchanged.
+     */
+    public User applyTo(User user) {
+        User patchedUser = user.toBuilder().build();
+        for (Operation operation : operations) {
+            Field field = operation.field();
+            switch (operation.type()) {
+                case "add", "replace" -> field.setter.accept(patchedUser, operation.value());
+                case "remove" -> field.setter.accept(patchedUser, null);
+                case "test" -> {
+                    if (!Objects.equals(field.getter.apply(patchedUser), operation.value())) {
+                        throw new IllegalArgumentException("Value of " + field.path() + " is not " + operation.value());
+                    }
+                }
+                case "copy" -> field.setter.accept(patchedUser, operation.from().getter.apply(patchedUser));
+                case "move" -> {
+                    Object value = operation.from().getter.apply(patchedUser);
+                    operation.from().setter.accept(patchedUser, null);
+                    field.setter.accept(patchedUser, value);
+                }
+                default -> throw new IllegalStateException("Unexpected operation " + operation.type());
+            }
+        }
+        return patchedUser;
+    }
+
+    private static JsonNode valueOf(JsonNode operationNode) {
+        JsonNode value = operationNode.get("value");
+        if (value == null) {
+            throw new IllegalArgumentException("JSON Patch operation " + operationNode.path("op") + " requires a value");
+        }
+        return value;
+    }
+
+    private static Field writable(Field field) {
+        if (field.setter == null) {
+            throw new IllegalArgumentException("Path " + field.path() + " cannot be changed");
+        }
+        return field;
+    }
+
+    private record Operation(String type, Field field, Field from, Object value) {
+    }
+
+    private enum Field {
+        ID("id", Long.class, User::getId, null),
+        EMAIL("email", String.class, User::getEmail, (user, value) -> user.setEmail((String) value)),
+        FIRST_NAME("firstName", String.class, User::getFirstName, (user, value) -> user.setFirstName((String) value)),
+        LAST_NAME("lastName", String.class, User::getLastName, (user, value) -> user.setLastName((String) value)),
+        BIRTH_DATE("birthDate", LocalDate.class, User::getBirthDate, (user, value) -> user.setBirthDate((LocalDate) value)),
+        ADDRESS("address", String.class, User::getAddress, (user, value) -> user.setAddress((String) value)),
+        PHONE_NUMBER("phoneNumber", String.class, User::getPhoneNumber, (user, value) -> user.setPhoneNumber((String) value));
+
+        private static final Map<String, Field> FIELDS_BY_NAME = new HashMap<>();
+
+        static {
+            for (Field field : values()) {
+                FIELDS_BY_NAME.put(field.name, field);
+            }
+        }
+
+        private final String name;
+        private final Class<?> type;
+        private final Function<User, Object> getter;
+        private final BiConsumer<User, Object> setter;
+
+        Field(String name, Class<?> type, Function<User, Object> getter, BiConsumer<User, Object> setter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        // user fields have plain names, so a pointer never needs ~0 or ~1 unescaping
+        static Field ofPath(String path) {
+            if (path == null || !path.startsWith("/")) {
+                throw new IllegalArgumentException("Invalid JSON Pointer " + path);
+            }
+            Field field = FIELDS_BY_NAME.get(path.substring(1));
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown path " + path);
+            }
+            return field;
+        }
+
+        static Field ofName(String name) {
+            Field field = FIELDS_BY_NAME.get(name);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field " + name);
+            }
+            return field;
+        }
+
+        String path() {
+            return "/" + name;
+        }
+
+        Object parse(JsonNode value) {
+            if (value.isNull()) {
+                return null;
+            }
+            if (type == Long.class) {
+                if (!value.canConvertToLong()) {
+                    throw new IllegalArgumentException("Value of " + path() + " must be a number");
+                }
+                return value.longValue();
+            }
+            if (!value.isTextual()) {
+                throw new IllegalArgumentException("Value of " + path() + " must be a string");
+            }
+            if (type == LocalDate.class) {
+                try {
+                    return LocalDate.parse(value.textValue());
+                } catch (DateTimeParseException exception) {
+                    throw new IllegalArgumentException("Value of " + path() + " must be a date like 2000-01-31");
+                }
+            }
+            return value.textValue();
+        }
+    }
+}
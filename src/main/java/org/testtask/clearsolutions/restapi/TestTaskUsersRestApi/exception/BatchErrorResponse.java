@@ -0,0 +1,19 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class BatchErrorResponse extends ErrorResponse {
+    private List<BatchItemError> errors;
+
+    public BatchErrorResponse(int status, String error, String message, List<BatchItemError> errors) {
+        super(status, error, message);
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,17 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemError {
+    private int index;
+    private List<String> messages;
+}
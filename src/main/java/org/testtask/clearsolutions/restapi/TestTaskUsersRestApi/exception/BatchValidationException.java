@@ -0,0 +1,17 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
+
+import java.util.List;
+
+public class BatchValidationException extends IllegalArgumentException {
+
+    private final List<BatchItemError> errors;
+
+    public BatchValidationException(List<BatchItemError> errors) {
+        super("Provided users have errors in " + errors.size() + " item(s)");
+        this.errors = errors;
+    }
+
+    public List<BatchItemError> getErrors() {
+        return errors;
+    }
+}
@@ -1,50 +1,100 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.github.fge.jsonpatch.JsonPatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+/**
+ * Error bodies are always written as JSON, whatever the request accepts, so that a client of an endpoint producing
+ * only NDJSON, Smile or CBOR still gets its error instead of a {@code 500} with no body.
+ */
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+
+    private final Counter notFoundCounter;
+    private final Counter validationFailureCounter;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.notFoundCounter = Counter.builder("users.not.found")
+                .description("Requests for users that do not exist")
+                .register(meterRegistry);
+        this.validationFailureCounter = Counter.builder("users.validation.failures")
+                .description("Requests rejected because a created, replaced or patched user is invalid")
+                .register(meterRegistry);
+    }
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<?> handleUserNotFoundException(UserNotFoundException exception) {
+        notFoundCounter.increment();
         log.info("UserNotFoundException thrown: " + exception.getMessage());
         ErrorResponse errorResponse = new ErrorResponse(HttpStatus.NOT_FOUND.value(), HttpStatus.NOT_FOUND.getReasonPhrase(), exception.getMessage());
-        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+    }
+
+    @ExceptionHandler(UserVersionMismatchException.class)
+    public ResponseEntity<?> handleUserVersionMismatchException(UserVersionMismatchException exception) {
+        log.info("UserVersionMismatchException thrown: " + exception.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.PRECONDITION_FAILED.value(), HttpStatus.PRECONDITION_FAILED.getReasonPhrase(), exception.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<?> handleIllegalArgumentException(IllegalArgumentException exception) {
         log.info("IllegalArgumentException thrown: " + exception.getMessage());
         ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.getReasonPhrase(), exception.getMessage());
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
     }
 
-    @ExceptionHandler(JsonPatchException.class)
-    public ResponseEntity<?> handleJsonPatchException(JsonPatchException exception) {
-        log.info("JsonPatchException thrown: " + exception.getMessage());
-        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.getReasonPhrase(), exception.getMessage());
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    @ExceptionHandler(UserValidationException.class)
+    public ResponseEntity<?> handleUserValidationException(UserValidationException exception) {
+        validationFailureCounter.increment();
+        log.info("UserValidationException thrown: " + exception.getMessage());
+        // the error of invalid users has always been the status itself, as when the controller validated them
+        ErrorResponse errorResponse = new ErrorResponse(HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.toString(), exception.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+    }
+
+    @ExceptionHandler(BatchValidationException.class)
+    public ResponseEntity<?> handleBatchValidationException(BatchValidationException exception) {
+        validationFailureCounter.increment();
+        log.info("BatchValidationException thrown: " + exception.getMessage());
+        BatchErrorResponse errorResponse = new BatchErrorResponse(HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.getReasonPhrase(), exception.getMessage(), exception.getErrors());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
     }
 
     @ExceptionHandler(JsonProcessingException.class)
     public ResponseEntity<?> handleJsonProcessingException(JsonProcessingException exception) {
         log.info("JsonProcessingException thrown: " + exception.getMessage());
         ErrorResponse errorResponse = new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase(), exception.getMessage());
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
     }
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<?> handleResponseStatusException(ResponseStatusException exception) {
         log.info("ResponseStatusException thrown: " + exception.getMessage());
         ErrorResponse errorResponse = new ErrorResponse(exception.getStatusCode().value(), exception.getStatusCode().toString(), exception.getReason());
-        return ResponseEntity.status(exception.getStatusCode()).body(errorResponse);
+        return ResponseEntity.status(exception.getStatusCode()).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+    }
+
+    // the problem details of the errors handled by Spring MVC itself, such as a malformed request parameter
+    @Override
+    protected ResponseEntity<Object> createResponseEntity(Object body, HttpHeaders headers, HttpStatusCode statusCode, WebRequest request) {
+        if (body != null && headers.getContentType() == null) {
+            headers = new HttpHeaders(headers);
+            headers.setContentType(MediaType.APPLICATION_PROBLEM_JSON);
+        }
+        return super.createResponseEntity(body, headers, statusCode, request);
     }
-}
\ No newline at end of file
+}
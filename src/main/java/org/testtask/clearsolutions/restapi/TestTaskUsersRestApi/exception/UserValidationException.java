@@ -0,0 +1,11 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
+
+/**
+ * A created, replaced or patched user that breaks a constraint or is younger than the minimum age.
+ */
+public class UserValidationException extends IllegalArgumentException {
+
+    public UserValidationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception;
+
+public class UserVersionMismatchException extends RuntimeException {
+    public UserVersionMismatchException() {
+        super();
+    }
+
+    public UserVersionMismatchException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UserVersionMismatchException(String message) {
+        super(message);
+    }
+
+    public UserVersionMismatchException(Throwable cause) {
+        super(cause);
+    }
+}
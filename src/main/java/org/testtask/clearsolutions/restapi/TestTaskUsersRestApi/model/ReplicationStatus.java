@@ -0,0 +1,21 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Replication state of this instance. A leader reports its log id and latest offset; a follower reports the position
+ * it applied, the latest offset of the leader it knows of, its lag and the number of snapshots it loaded. Fields that
+ * do not apply to the role, or are not known yet, are left out.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReplicationStatus(String role, String leaderUrl, String logId, Long offset, Long leaderOffset,
+                                Long lagMillis, Long millisSinceLastContact, Long snapshots) {
+
+    public static ReplicationStatus none() {
+        return new ReplicationStatus("none", null, null, null, null, null, null, null);
+    }
+
+    public static ReplicationStatus leader(String logId, long offset) {
+        return new ReplicationStatus("leader", null, logId, offset, null, null, null, null);
+    }
+}
@@ -1,5 +1,6 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -10,11 +11,15 @@ import lombok.Data;
 import java.time.LocalDate;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class User {
 
     private long id;
 
+    // assigned by the store: 1 on creation, incremented by every update
+    @JsonIgnore
+    private long version;
+
     @NotBlank(message = "Email is required and cannot be blank")
     @Email(message = "Email must be a valid email")
     private String email;
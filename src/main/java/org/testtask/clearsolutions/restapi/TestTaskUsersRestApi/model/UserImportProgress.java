@@ -0,0 +1,11 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+
+import java.util.List;
+
+/**
+ * Running counters of an import; {@code errors} only holds the rejected lines of the latest chunk, indexed by line number.
+ */
+public record UserImportProgress(long processed, long created, long rejected, boolean done, List<BatchItemError> errors) {
+}
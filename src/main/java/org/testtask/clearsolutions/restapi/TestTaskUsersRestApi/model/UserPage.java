@@ -0,0 +1,13 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model;
+
+import java.util.List;
+
+/**
+ * One page of users; {@code nextCursor} is an opaque token for the following page, or {@code null} on the last page.
+ */
+public record UserPage(List<User> users, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
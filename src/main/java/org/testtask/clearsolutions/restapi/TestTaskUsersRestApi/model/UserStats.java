@@ -0,0 +1,21 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of users by birth year and month and by age band. An age band counts the users at least {@code fromAge}
+ * and less than {@code toAge} years old; the last band has no {@code toAge}. Users born in the future, if any, are
+ * only counted in {@code total} and the birth years.
+ */
+public record UserStats(long total, List<BirthYear> birthYears, List<AgeBand> ageBands) {
+
+    /**
+     * {@code months} maps the months of the year with at least one birth, 1 to 12, to their count.
+     */
+    public record BirthYear(int year, long count, Map<Integer, Long> months) {
+    }
+
+    public record AgeBand(int fromAge, Integer toAge, long count) {
+    }
+}
@@ -0,0 +1,87 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Binary layout of a user shared by the write-ahead log and snapshots.
+ * Strings are written as a length prefixed UTF-8 byte array, with {@code -1} standing for {@code null}.
+ */
+public final class UserRecordCodec {
+
+    private UserRecordCodec() {
+    }
+
+    public static void writeUser(DataOutput output, User user) throws IOException {
+        output.writeLong(user.getId());
+        output.writeLong(user.getVersion());
+        writeString(output, user.getEmail());
+        writeString(output, user.getFirstName());
+        writeString(output, user.getLastName());
+        output.writeLong(user.getBirthDate().toEpochDay());
+        writeString(output, user.getAddress());
+        writeString(output, user.getPhoneNumber());
+    }
+
+    public static User readUser(DataInput input) throws IOException {
+        return User.builder()
+                .id(input.readLong())
+                .version(input.readLong())
+                .email(readString(input))
+                .firstName(readString(input))
+                .lastName(readString(input))
+                .birthDate(LocalDate.ofEpochDay(input.readLong()))
+                .address(readString(input))
+                .phoneNumber(readString(input))
+                .build();
+    }
+
+    public static User readUser(ByteBuffer buffer) {
+        return User.builder()
+                .id(buffer.getLong())
+                .version(buffer.getLong())
+                .email(readString(buffer))
+                .firstName(readString(buffer))
+                .lastName(readString(buffer))
+                .birthDate(LocalDate.ofEpochDay(buffer.getLong()))
+                .address(readString(buffer))
+                .phoneNumber(readString(buffer))
+                .build();
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
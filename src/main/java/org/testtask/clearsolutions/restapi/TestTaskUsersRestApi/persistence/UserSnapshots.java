@@ -0,0 +1,202 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary images of the whole store, named after the write-ahead log sequence they cover.
+ * <p>
+ * A snapshot is written from a live store without blocking writers, so it may already contain some changes made
+ * after its sequence; replaying the log records that follow the sequence brings every user up to date, because
+ * log records hold full user images.
+ * <p>
+ * File layout: {@code [int magic][int format version][long sequence]}, then {@code [int length][user]} per user,
+ * then {@code [int -1][long user count][int CRC32 of everything before it]}.
+ */
+@Slf4j
+public class UserSnapshots {
+
+    static final int MAGIC = 0x55534E50; // "USNP"
+    static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int TRAILER_SIZE = 16;
+    private static final int END_OF_USERS = -1;
+    private static final long MAPPED_WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("users-(\\d{20})\\.snapshot");
+
+    private final Path directory;
+
+    public UserSnapshots(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Loads the newest readable snapshot into {@code users} and returns its sequence, or {@code 0}
+     * if there is none. Damaged snapshots are skipped in favour of older ones.
+     */
+    public long loadLatest(Map<Long, User> users) throws IOException {
+        for (Map.Entry<Long, Path> snapshot : listSnapshots().descendingMap().entrySet()) {
+            try {
+                load(snapshot.getValue(), users);
+                log.info("Loaded {} users from snapshot {}", users.size(), snapshot.getValue());
+                return snapshot.getKey();
+            } catch (IOException | RuntimeException exception) {
+                log.warn("Skipping unreadable snapshot {}", snapshot.getValue(), exception);
+                users.clear();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes the users to a new snapshot for {@code sequence}. The file only becomes visible under its final name
+     * once it is complete and fsynced.
+     */
+    public Path write(long sequence, Stream<User> users) throws IOException {
+        Path snapshot = directory.resolve(String.format("users-%020d.snapshot", sequence));
+        Path temporaryFile = directory.resolve(snapshot.getFileName() + ".tmp");
+        try (FileChannel fileChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checkedOutput = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(fileChannel), 1 << 16), new CRC32());
+            DataOutputStream output = new DataOutputStream(checkedOutput);
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(sequence);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+            DataOutputStream recordOutput = new DataOutputStream(record);
+            long count = 0;
+            for (Iterator<User> iterator = users.iterator(); iterator.hasNext(); count++) {
+                record.reset();
+                UserRecordCodec.writeUser(recordOutput, iterator.next());
+                output.writeInt(record.size());
+                record.writeTo(output);
+            }
+            output.writeInt(END_OF_USERS);
+            output.writeLong(count);
+            output.flush();
+            output.writeInt((int) checkedOutput.getChecksum().getValue());
+            output.flush();
+            fileChannel.force(true);
+        } catch (IOException | RuntimeException exception) {
+            Files.deleteIfExists(temporaryFile);
+            throw exception;
+        }
+        Files.move(temporaryFile, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        UserWriteAheadLog.syncDirectory(directory);
+        return snapshot;
+    }
+
+    /**
+     * Deletes the snapshots older than the one for {@code sequence}, along with leftovers of interrupted writes.
+     */
+    public void deleteOlderThan(long sequence) throws IOException {
+        for (Path snapshot : listSnapshots().headMap(sequence).values()) {
+            Files.deleteIfExists(snapshot);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".snapshot.tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private NavigableMap<Long, Path> listSnapshots() throws IOException {
+        NavigableMap<Long, Path> snapshots = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    snapshots.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return snapshots;
+    }
+
+    /**
+     * Reads the snapshot through memory-mapped windows, so the file is decoded straight from the page cache
+     * instead of being copied through stream buffers first.
+     */
+    private static void load(Path snapshot, Map<Long, User> users) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Snapshot " + snapshot + " is truncated");
+            }
+            CRC32 crc = new CRC32();
+            long windowStart = 0;
+            MappedByteBuffer window = map(fileChannel, windowStart, size);
+            if (window.getInt() != MAGIC) {
+                throw new IOException(snapshot + " is not a user snapshot");
+            }
+            int formatVersion = window.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + formatVersion + " in " + snapshot);
+            }
+            window.getLong();
+            crc.update(window.duplicate().flip());
+
+            long count = 0;
+            while (true) {
+                if (window.remaining() < TRAILER_SIZE && windowStart + window.limit() < size) {
+                    windowStart += window.position();
+                    window = map(fileChannel, windowStart, size);
+                }
+                int recordStart = window.position();
+                int length = window.getInt();
+                if (length == END_OF_USERS) {
+                    break;
+                }
+                if (length <= 0 || windowStart + recordStart + Integer.BYTES + length > size - TRAILER_SIZE) {
+                    throw new IOException("Snapshot " + snapshot + " is corrupt at byte " + (windowStart + recordStart));
+                }
+                if (window.remaining() < length) {
+                    // the record crosses the end of the window
+                    windowStart += recordStart;
+                    window = map(fileChannel, windowStart, size);
+                    recordStart = 0;
+                    window.position(Integer.BYTES);
+                }
+                User user = UserRecordCodec.readUser(window.slice(window.position(), length));
+                users.put(user.getId(), user);
+                crc.update(window.slice(recordStart, Integer.BYTES + length));
+                window.position(window.position() + length);
+                count++;
+            }
+
+            int trailerStart = window.position() - Integer.BYTES;
+            long expectedCount = window.getLong();
+            crc.update(window.slice(trailerStart, TRAILER_SIZE - Integer.BYTES));
+            int checksum = window.getInt();
+            if (expectedCount != count || checksum != (int) crc.getValue() || windowStart + window.position() != size) {
+                throw new IOException("Snapshot " + snapshot + " is corrupt");
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel fileChannel, long position, long size) throws IOException {
+        return fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_WINDOW_SIZE, size - position));
+    }
+}
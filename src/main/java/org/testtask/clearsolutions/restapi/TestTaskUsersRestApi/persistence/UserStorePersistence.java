@@ -0,0 +1,101 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a store durable with a write-ahead log and periodic snapshots in one directory.
+ * Recovery loads the latest snapshot and replays only the log records written after it.
+ */
+@Slf4j
+public class UserStorePersistence implements Closeable {
+
+    private final UserWriteAheadLog writeAheadLog;
+    private final UserSnapshots snapshots;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    private UserStore userStore;
+    private volatile long snapshotSequence;
+
+    public UserStorePersistence(Path directory, UserWriteAheadLog.FsyncPolicy fsyncPolicy, Duration fsyncInterval,
+                                Duration snapshotInterval) throws IOException {
+        this.writeAheadLog = new UserWriteAheadLog(directory, fsyncPolicy, fsyncInterval);
+        this.snapshots = new UserSnapshots(directory);
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Rebuilds the store from disk, then starts logging its changes and taking snapshots.
+     */
+    public void recover(UserStore userStore) throws IOException {
+        long startTime = System.nanoTime();
+        Map<Long, User> users = new HashMap<>();
+        snapshotSequence = snapshots.loadLatest(users);
+        long sequence = writeAheadLog.replay(users, snapshotSequence);
+        userStore.load(users.values());
+        log.info("Recovered {} users up to sequence {} in {} ms", users.size(), sequence,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        this.userStore = userStore;
+        writeAheadLog.start(userStore);
+        if (!snapshotInterval.isZero() && !snapshotInterval.isNegative()) {
+            snapshotScheduler.scheduleWithFixedDelay(this::takeScheduledSnapshot, snapshotInterval.toNanos(),
+                    snapshotInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the store unless nothing changed since the last one, then deletes the older
+     * snapshots and the log segments it covers. Writers are not blocked while the store is copied.
+     */
+    public void takeSnapshot() throws IOException {
+        if (writeAheadLog.getAppendedSequence() == snapshotSequence) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        writeAheadLog.rotate();
+        // every record up to this sequence is already applied to the store, so the copy below reflects it
+        long sequence = writeAheadLog.getAppendedSequence();
+        Path snapshot = snapshots.write(sequence, userStore.streamAll());
+        snapshotSequence = sequence;
+        snapshots.deleteOlderThan(sequence);
+        writeAheadLog.deleteSegmentsUpTo(sequence);
+        log.info("Wrote snapshot {} in {} ms", snapshot, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotScheduler.shutdownNow();
+        try {
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        writeAheadLog.close();
+    }
+
+    private void takeScheduledSnapshot() {
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException exception) {
+            log.error("Could not write a snapshot", exception);
+        }
+    }
+}
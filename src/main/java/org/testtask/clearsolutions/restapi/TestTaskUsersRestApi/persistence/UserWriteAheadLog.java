@@ -0,0 +1,523 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of store mutations. Every record holds the full user (or the id of a deleted user), so replaying
+ * the log in order rebuilds the store, and replaying a record that is already reflected in the store is harmless.
+ * <p>
+ * Records are appended to an in-memory buffer while the store holds its write lock, and a single committer thread
+ * writes and fsyncs whatever has accumulated. Writers waiting for durability therefore share one fsync (group commit).
+ * <ul>
+ *     <li>{@code ALWAYS}: writers wait until their record is fsynced; the committer syncs as soon as records arrive.</li>
+ *     <li>{@code BATCHED}: like {@code ALWAYS}, but the committer first waits {@code fsyncInterval} to gather more records.</li>
+ *     <li>{@code INTERVAL}: writers do not wait; records are written right away and fsynced every {@code fsyncInterval}.</li>
+ * </ul>
+ * The log is split into segment files named after the sequence of their first record, so that segments covered by
+ * a snapshot can be deleted. Each segment starts with a {@value #MAGIC} header and format version, followed by records
+ * of {@code [int payload length][int CRC32 of payload][long sequence][byte type][user or id]}.
+ */
+@Slf4j
+public class UserWriteAheadLog implements UserStoreListener, Closeable {
+
+    public enum FsyncPolicy {
+        ALWAYS, BATCHED, INTERVAL
+    }
+
+    static final int MAGIC = 0x5557414C; // "UWAL"
+    static final int FORMAT_VERSION = 2;
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("users-(\\d{20})\\.wal");
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsAppended = lock.newCondition();
+    private final Condition recordsSynced = lock.newCondition();
+    private final ThreadLocal<Long> lastAppendedSequence = new ThreadLocal<>();
+    private final Thread committer;
+
+    // owned by the committer once started
+    private FileChannel channel;
+    private long segmentStartSequence;
+
+    // guarded by lock
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    private long appendedSequence;
+    private long syncedSequence;
+    private IOException failure;
+    private boolean rotationRequested;
+    private boolean closed;
+    private boolean committerStopped;
+
+    public UserWriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        Files.createDirectories(directory);
+        this.committer = new Thread(this::runCommitter, "user-wal-committer");
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Applies every record with a sequence above {@code afterSequence} to {@code users}, cuts off a torn tail
+     * left by a crash and opens the last segment for appending. Returns the sequence of the last record.
+     */
+    public long replay(Map<Long, User> users, long afterSequence) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+
+        long lastSequence = 0;
+        long expectedSequence = segments.isEmpty() ? afterSequence + 1 : segments.firstKey();
+        if (expectedSequence > afterSequence + 1) {
+            throw new IOException("Write-ahead log in " + directory + " starts at sequence " + expectedSequence
+                    + ", but records after " + afterSequence + " are needed");
+        }
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            boolean lastSegment = segment.getKey().equals(segments.lastKey());
+            if (segment.getKey() != expectedSequence && segment.getKey() > afterSequence + 1) {
+                throw new IOException("Write-ahead log segment " + segment.getValue() + " starts at sequence "
+                        + segment.getKey() + ", expected " + expectedSequence);
+            }
+            expectedSequence = replaySegment(segment.getKey(), segment.getValue(), lastSegment, users, afterSequence);
+            lastSequence = expectedSequence - 1;
+        }
+
+        long recoveredSequence = Math.max(lastSequence, afterSequence);
+        appendedSequence = recoveredSequence;
+        syncedSequence = recoveredSequence;
+        if (segments.isEmpty() || lastSequence < afterSequence) {
+            // the snapshot is ahead of the log (or there is no log yet), so new records start a fresh segment
+            if (channel != null) {
+                channel.close();
+            }
+            openSegment(recoveredSequence + 1);
+        }
+        log.info("Replayed write-ahead log {} up to sequence {}", directory, recoveredSequence);
+        return recoveredSequence;
+    }
+
+    /**
+     * Starts logging the mutations of the store. Called once, after {@link #replay(Map, long)}.
+     */
+    public void start(UserStore userStore) {
+        userStore.addListener(this);
+        committer.start();
+    }
+
+    public long getAppendedSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes the committer continue in a new segment, so that everything appended so far can later be dropped
+     * as a whole. Returns once the new segment is in use; does nothing if the current segment is still empty.
+     */
+    public void rotate() throws IOException {
+        lock.lock();
+        try {
+            rotationRequested = true;
+            recordsAppended.signal();
+            while (rotationRequested && failure == null && !committerStopped) {
+                recordsSynced.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw new IOException("Write-ahead log " + directory + " failed", failure);
+            }
+            if (rotationRequested) {
+                throw new IllegalStateException("Write-ahead log " + directory + " is closed");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold records up to {@code sequence}. The segment in use is always kept.
+     */
+    public void deleteSegmentsUpTo(long sequence) throws IOException {
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long nextSegmentStart = segments.higherKey(segment.getKey());
+            if (nextSegmentStart == null || nextSegmentStart > sequence + 1) {
+                return;
+            }
+            Files.deleteIfExists(segment.getValue());
+            segments.remove(segment.getKey());
+        }
+    }
+
+    @Override
+    public void onInsert(User user) {
+        append(PUT, user, user.getId());
+    }
+
+    @Override
+    public void onUpdate(User previousUser, User user) {
+        append(PUT, user, user.getId());
+    }
+
+    @Override
+    public void onDelete(User user) {
+        append(DELETE, null, user.getId());
+    }
+
+    @Override
+    public void afterWrite() {
+        Long sequence = lastAppendedSequence.get();
+        if (sequence == null) {
+            return;
+        }
+        lastAppendedSequence.remove();
+        lock.lock();
+        try {
+            if (fsyncPolicy != FsyncPolicy.INTERVAL) {
+                while (syncedSequence < sequence && failure == null && !committerStopped) {
+                    recordsSynced.awaitUninterruptibly();
+                }
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log " + directory + " failed", failure);
+            }
+            if (fsyncPolicy != FsyncPolicy.INTERVAL && syncedSequence < sequence) {
+                throw new IllegalStateException("Write-ahead log " + directory + " is closed");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            recordsAppended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void append(byte type, User user, long id) {
+        lock.lock();
+        try {
+            long sequence = ++appendedSequence;
+            pending.appendRecord(sequence, type, user, id);
+            lastAppendedSequence.set(sequence);
+            recordsAppended.signal();
+        } catch (IOException exception) {
+            // RecordBuffer writes to memory only
+            throw new UncheckedIOException(exception);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runCommitter() {
+        long lastSyncTime = System.nanoTime();
+        boolean unsyncedWrites = false;
+        try {
+            while (true) {
+                boolean stopping = awaitRecords(unsyncedWrites, lastSyncTime);
+                if (fsyncPolicy == FsyncPolicy.BATCHED && !stopping) {
+                    // give concurrent writers a chance to join this fsync
+                    LockSupport.parkNanos(fsyncIntervalNanos);
+                }
+
+                RecordBuffer batch;
+                long batchSequence;
+                boolean rotating;
+                lock.lock();
+                try {
+                    batch = pending;
+                    pending = spare;
+                    spare = batch;
+                    batchSequence = appendedSequence;
+                    rotating = rotationRequested;
+                    stopping = closed;
+                } finally {
+                    lock.unlock();
+                }
+
+                if (batch.size() > 0) {
+                    ByteBuffer buffer = batch.asByteBuffer();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    unsyncedWrites = true;
+                    batch.reset();
+                }
+                if (unsyncedWrites && (fsyncPolicy != FsyncPolicy.INTERVAL || stopping || rotating
+                        || System.nanoTime() - lastSyncTime >= fsyncIntervalNanos)) {
+                    channel.force(false);
+                    lastSyncTime = System.nanoTime();
+                    unsyncedWrites = false;
+                }
+                if (rotating && batchSequence >= segmentStartSequence) {
+                    channel.close();
+                    openSegment(batchSequence + 1);
+                }
+
+                lock.lock();
+                try {
+                    if (!unsyncedWrites) {
+                        syncedSequence = batchSequence;
+                    }
+                    if (rotating) {
+                        rotationRequested = false;
+                    }
+                    recordsSynced.signalAll();
+                    if (stopping && pending.size() == 0) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException exception) {
+            log.error("Write-ahead log {} failed", directory, exception);
+            lock.lock();
+            try {
+                failure = exception;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.lock();
+            try {
+                committerStopped = true;
+                recordsSynced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Blocks until records are pending, a rotation is requested, the log is closed or, with the {@code INTERVAL}
+     * policy, the next fsync is due. Returns whether the log is closed.
+     */
+    private boolean awaitRecords(boolean unsyncedWrites, long lastSyncTime) {
+        lock.lock();
+        try {
+            while (pending.size() == 0 && !rotationRequested && !closed) {
+                if (fsyncPolicy == FsyncPolicy.INTERVAL && unsyncedWrites) {
+                    long remainingNanos = lastSyncTime + fsyncIntervalNanos - System.nanoTime();
+                    if (remainingNanos <= 0) {
+                        break;
+                    }
+                    recordsAppended.awaitNanos(remainingNanos);
+                } else {
+                    recordsAppended.await();
+                }
+            }
+            return closed;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(long startSequence) throws IOException {
+        Path path = directory.resolve(String.format("users-%020d.wal", startSequence));
+        FileChannel segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            segmentChannel.write(header);
+        }
+        segmentChannel.force(true);
+        syncDirectory(directory);
+        segments.put(startSequence, path);
+        channel = segmentChannel;
+        segmentStartSequence = startSequence;
+    }
+
+    /**
+     * Makes a created, renamed or deleted file in the directory durable. Not every platform allows opening
+     * a directory, in which case this is skipped.
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException exception) {
+            log.debug("Could not fsync directory {}", directory, exception);
+        }
+    }
+
+    /**
+     * Replays one segment and returns the sequence expected after its last record. A torn tail is only
+     * tolerated (and truncated) in the last segment, which is then kept open for appending.
+     */
+    private long replaySegment(long startSequence, Path path, boolean lastSegment, Map<Long, User> users,
+                               long afterSequence) throws IOException {
+        FileChannel segmentChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = segmentChannel.size();
+            long position = 0;
+            long nextSequence = startSequence;
+            if (size >= FILE_HEADER_SIZE) {
+                DataInputStream input = new DataInputStream(new BufferedInputStream(
+                        Channels.newInputStream(segmentChannel), 1 << 16));
+                if (input.readInt() != MAGIC) {
+                    throw new IOException(path + " is not a user write-ahead log segment");
+                }
+                int formatVersion = input.readInt();
+                if (formatVersion != FORMAT_VERSION) {
+                    throw new IOException("Unsupported write-ahead log format version " + formatVersion + " in " + path);
+                }
+                position = FILE_HEADER_SIZE;
+                CRC32 crc = new CRC32();
+                while (position + RECORD_HEADER_SIZE <= size) {
+                    int payloadLength = input.readInt();
+                    int checksum = input.readInt();
+                    if (payloadLength <= 0 || payloadLength > MAX_PAYLOAD_SIZE
+                            || position + RECORD_HEADER_SIZE + payloadLength > size) {
+                        break;
+                    }
+                    byte[] payload = new byte[payloadLength];
+                    input.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                    long sequence = applyRecord(new DataInputStream(new ByteArrayInputStream(payload)), users, afterSequence);
+                    if (sequence != nextSequence) {
+                        throw new IOException("Unexpected sequence " + sequence + " in " + path + ", expected " + nextSequence);
+                    }
+                    nextSequence++;
+                    position += RECORD_HEADER_SIZE + payloadLength;
+                }
+            }
+
+            if (position < size || position < FILE_HEADER_SIZE) {
+                if (!lastSegment) {
+                    throw new IOException("Write-ahead log segment " + path + " is corrupt at byte " + position);
+                }
+                log.warn("Truncating torn tail of write-ahead log segment {} from {} to {} bytes", path, size, position);
+                if (position < FILE_HEADER_SIZE) {
+                    segmentChannel.close();
+                    segments.remove(startSequence);
+                    openSegment(startSequence);
+                    return nextSequence;
+                }
+                segmentChannel.truncate(position);
+                segmentChannel.force(true);
+            }
+            if (lastSegment) {
+                segmentChannel.position(position);
+                channel = segmentChannel;
+                segmentStartSequence = startSequence;
+            } else {
+                segmentChannel.close();
+            }
+            return nextSequence;
+        } catch (IOException | RuntimeException exception) {
+            segmentChannel.close();
+            throw exception;
+        }
+    }
+
+    private static long applyRecord(DataInputStream record, Map<Long, User> users, long afterSequence) throws IOException {
+        long sequence = record.readLong();
+        byte type = record.readByte();
+        if (type != PUT && type != DELETE) {
+            throw new IOException("Unknown write-ahead log record type " + type + " at sequence " + sequence);
+        }
+        if (sequence <= afterSequence) {
+            return sequence;
+        }
+        if (type == PUT) {
+            User user = UserRecordCodec.readUser(record);
+            users.put(user.getId(), user);
+        } else {
+            users.remove(record.readLong());
+        }
+        return sequence;
+    }
+
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream output = new DataOutputStream(this);
+        private final CRC32 crc = new CRC32();
+
+        RecordBuffer() {
+            super(1 << 16);
+        }
+
+        void appendRecord(long sequence, byte type, User user, long id) throws IOException {
+            int recordStart = count;
+            output.writeInt(0);
+            output.writeInt(0);
+            output.writeLong(sequence);
+            output.writeByte(type);
+            if (user != null) {
+                UserRecordCodec.writeUser(output, user);
+            } else {
+                output.writeLong(id);
+            }
+            int payloadStart = recordStart + RECORD_HEADER_SIZE;
+            crc.reset();
+            crc.update(buf, payloadStart, count - payloadStart);
+            ByteBuffer.wrap(buf, recordStart, RECORD_HEADER_SIZE)
+                    .putInt(count - payloadStart)
+                    .putInt((int) crc.getValue());
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import lombok.extern.slf4j.Slf4j;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.ReplicationStatus;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a local store a copy of the leader's store. A follower thread long-polls the leader's log for the records
+ * after the last offset it applied and applies each batch as one {@link UserStore#writeBatch(Runnable) batch}: a
+ * create or update puts the leader's user under its id and version, a delete removes it, so applying a record twice
+ * is harmless. Without a position, or when the leader no longer has the records after it, the follower loads a
+ * snapshot of the leader's users instead.
+ * <p>
+ * With a {@code positionFile}, the position is saved after every batch, so a follower whose store is recovered from
+ * disk on restart catches up from where it stopped. The position is saved once the batch is applied, and the store
+ * makes it durable as configured, so with an fsync of the write-ahead log on every write a crash can only make the
+ * follower apply some records again.
+ */
+@Slf4j
+public class UserReplicationFollower implements Closeable {
+
+    private final UserStore userStore;
+    private final String leaderUrl;
+    private final Path positionFile;
+    private final int batchSize;
+    private final Duration pollWait;
+    private final Duration retryInterval;
+    private final HttpClient httpClient;
+    private final Thread follower;
+
+    private volatile boolean closed;
+
+    // written by the follower thread only
+    private volatile UserReplicationLog.Position position;
+    private volatile long leaderOffset = -1;
+    private volatile long lastAppliedTimestamp;
+    private volatile long lastContactTime;
+    private volatile long snapshotCount;
+
+    /**
+     * @param leaderUrl    base URL of the leader, such as {@code http://localhost:8080}
+     * @param positionFile where to keep the last applied position across restarts, or {@code null} to always start
+     *                     from a snapshot
+     */
+    public UserReplicationFollower(UserStore userStore, String leaderUrl, Path positionFile, int batchSize,
+                                   Duration pollWait, Duration retryInterval) {
+        this.userStore = userStore;
+        this.leaderUrl = leaderUrl.endsWith("/") ? leaderUrl.substring(0, leaderUrl.length() - 1) : leaderUrl;
+        this.positionFile = positionFile;
+        this.batchSize = batchSize;
+        this.pollWait = pollWait;
+        this.retryInterval = retryInterval;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.follower = new Thread(this::follow, "user-replication-follower");
+        follower.setDaemon(true);
+    }
+
+    public void start() throws IOException {
+        position = readPosition();
+        if (position != null) {
+            log.info("Resuming replication from {} at offset {} of log {}", leaderUrl, position.offset(), position.logId());
+        }
+        follower.start();
+    }
+
+    /**
+     * Returns how far the local store is behind the leader as of the last answer of the leader: zero when it had
+     * applied everything the leader had, otherwise the age of the last applied record. Empty until the first answer.
+     */
+    public OptionalLong getLagMillis() {
+        UserReplicationLog.Position appliedPosition = position;
+        if (lastContactTime == 0 || appliedPosition == null) {
+            return OptionalLong.empty();
+        }
+        if (appliedPosition.offset() >= leaderOffset) {
+            return OptionalLong.of(0);
+        }
+        return OptionalLong.of(Math.max(0, System.currentTimeMillis() - lastAppliedTimestamp));
+    }
+
+    public ReplicationStatus getStatus() {
+        UserReplicationLog.Position appliedPosition = position;
+        OptionalLong lagMillis = getLagMillis();
+        long contactTime = lastContactTime;
+        return new ReplicationStatus("follower", leaderUrl,
+                appliedPosition == null ? null : appliedPosition.logId(),
+                appliedPosition == null ? null : appliedPosition.offset(),
+                leaderOffset < 0 ? null : leaderOffset,
+                lagMillis.isPresent() ? lagMillis.getAsLong() : null,
+                contactTime == 0 ? null : System.currentTimeMillis() - contactTime,
+                snapshotCount);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        follower.interrupt();
+        try {
+            follower.join(Duration.ofSeconds(10).toMillis());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void follow() {
+        while (!closed) {
+            try {
+                if (position == null) {
+                    loadSnapshot();
+                } else if (!applyNextBatch()) {
+                    log.info("Leader {} no longer has the records after offset {} of log {}, taking a snapshot",
+                            leaderUrl, position.offset(), position.logId());
+                    position = null;
+                }
+            } catch (InterruptedException exception) {
+                return;
+            } catch (IOException | RuntimeException exception) {
+                if (closed) {
+                    return;
+                }
+                log.warn("Could not replicate from {}: {}", leaderUrl, exception.toString());
+                try {
+                    Thread.sleep(retryInterval.toMillis());
+                } catch (InterruptedException interruptedException) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loadSnapshot() throws IOException, InterruptedException {
+        long requestTime = System.currentTimeMillis();
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(URI.create(leaderUrl + "/api/replication/snapshot"))
+                .GET()
+                .build());
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(response.body()))) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Leader answered " + response.statusCode() + " to a snapshot request");
+            }
+            UserReplicationLog.Position snapshotPosition = readPosition(response);
+            List<User> users = UserReplicationProtocol.readUsers(input);
+            applySnapshot(users);
+            lastAppliedTimestamp = requestTime;
+            leaderOffset = snapshotPosition.offset();
+            lastContactTime = System.currentTimeMillis();
+            snapshotCount++;
+            savePosition(snapshotPosition);
+            log.info("Loaded a snapshot of {} users at offset {} of log {} from {}", users.size(),
+                    snapshotPosition.offset(), snapshotPosition.logId(), leaderUrl);
+        }
+    }
+
+    /**
+     * Applies the records following the current position, once the leader has any. Returns {@code false} if the
+     * leader does not have them anymore.
+     */
+    private boolean applyNextBatch() throws IOException, InterruptedException {
+        UserReplicationLog.Position appliedPosition = position;
+        URI uri = URI.create(leaderUrl + "/api/replication/log?log="
+                + URLEncoder.encode(appliedPosition.logId(), StandardCharsets.UTF_8)
+                + "&after=" + appliedPosition.offset() + "&limit=" + batchSize + "&wait=" + pollWait.toMillis());
+        HttpResponse<InputStream> response = send(HttpRequest.newBuilder(uri)
+                .timeout(pollWait.plusSeconds(30))
+                .GET()
+                .build());
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(response.body()))) {
+            if (response.statusCode() == 410) {
+                lastContactTime = System.currentTimeMillis();
+                return false;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Leader answered " + response.statusCode() + " to a log request");
+            }
+            long currentLeaderOffset = readPosition(response).offset();
+            List<UserReplicationRecord> records = UserReplicationProtocol.readRecords(input);
+            if (!records.isEmpty()) {
+                userStore.writeBatch(() -> records.forEach(this::apply));
+                UserReplicationRecord lastRecord = records.get(records.size() - 1);
+                lastAppliedTimestamp = lastRecord.timestamp();
+                savePosition(new UserReplicationLog.Position(appliedPosition.logId(), lastRecord.offset()));
+            }
+            leaderOffset = currentLeaderOffset;
+            lastContactTime = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    /**
+     * Makes the store hold exactly the users of the snapshot. Unlike {@link UserStore#load}, this goes through
+     * ordinary writes, so a write-ahead log of the store records the result.
+     */
+    private void applySnapshot(List<User> users) {
+        Set<Long> snapshotIds = new HashSet<>(users.size() * 2);
+        users.forEach(user -> snapshotIds.add(user.getId()));
+        userStore.writeBatch(() -> {
+            List<Long> staleIds;
+            try (Stream<User> localUsers = userStore.streamAll()) {
+                staleIds = localUsers.map(User::getId).filter(id -> !snapshotIds.contains(id)).toList();
+            }
+            staleIds.forEach(userStore::delete);
+            users.forEach(userStore::restore);
+        });
+    }
+
+    private void apply(UserReplicationRecord record) {
+        if (record.isDelete()) {
+            userStore.delete(record.userId());
+        } else {
+            userStore.restore(record.user());
+        }
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static UserReplicationLog.Position readPosition(HttpResponse<?> response) throws IOException {
+        String logId = response.headers().firstValue(UserReplicationProtocol.LOG_ID_HEADER)
+                .orElseThrow(() -> new IOException("Leader response has no " + UserReplicationProtocol.LOG_ID_HEADER));
+        OptionalLong offset = response.headers().firstValueAsLong(UserReplicationProtocol.OFFSET_HEADER);
+        if (offset.isEmpty()) {
+            throw new IOException("Leader response has no " + UserReplicationProtocol.OFFSET_HEADER);
+        }
+        return new UserReplicationLog.Position(logId, offset.getAsLong());
+    }
+
+    private void savePosition(UserReplicationLog.Position newPosition) throws IOException {
+        if (positionFile != null) {
+            Path temporaryFile = positionFile.resolveSibling(positionFile.getFileName() + ".tmp");
+            Files.writeString(temporaryFile, newPosition.logId() + " " + newPosition.offset());
+            Files.move(temporaryFile, positionFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        position = newPosition;
+    }
+
+    private UserReplicationLog.Position readPosition() throws IOException {
+        if (positionFile == null || !Files.exists(positionFile)) {
+            return null;
+        }
+        String[] fields = Files.readString(positionFile).trim().split(" ");
+        if (fields.length != 2) {
+            throw new IOException("Malformed replication position in " + positionFile);
+        }
+        return new UserReplicationLog.Position(fields[0], Long.parseLong(fields[1]));
+    }
+}
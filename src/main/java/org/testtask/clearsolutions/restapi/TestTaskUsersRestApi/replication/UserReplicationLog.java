@@ -0,0 +1,143 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The leader's ordered log of store mutations, which followers read from the offset they applied last. The log
+ * keeps the latest {@code retention} records in memory; a follower that fell further behind, or that followed an
+ * earlier run of the leader, has a log id or offset the log no longer covers and starts over from a snapshot.
+ * Records are appended while the store holds its write lock, so every record up to the current offset is already
+ * applied to the store, and a snapshot copied after reading the offset reflects at least those records.
+ */
+public class UserReplicationLog implements UserStoreListener {
+
+    private final UserStore userStore;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsAppended = lock.newCondition();
+
+    // guarded by lock; the record with offset n is at n % records.length
+    private final UserReplicationRecord[] records;
+    private int size;
+    private String logId = UUID.randomUUID().toString();
+    private long lastOffset;
+
+    private UserReplicationLog(UserStore userStore, int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Replication log retention must be positive, got " + retention);
+        }
+        this.userStore = userStore;
+        this.records = new UserReplicationRecord[retention];
+    }
+
+    /**
+     * Starts logging the mutations of the store. Users already stored reach followers through snapshots.
+     */
+    public static UserReplicationLog of(UserStore userStore, int retention) {
+        UserReplicationLog log = new UserReplicationLog(userStore, retention);
+        userStore.addListener(log);
+        return log;
+    }
+
+    public Position getPosition() {
+        lock.lock();
+        try {
+            return new Position(logId, lastOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} records that follow {@code afterOffset} in the log {@code logId}, waiting up to
+     * {@code wait} for one if there are none yet. Returns nothing if the log does not hold the record right after
+     * {@code afterOffset}, because it was dropped or {@code logId} is not the current log.
+     */
+    public Optional<List<UserReplicationRecord>> read(String logId, long afterOffset, int limit, Duration wait)
+            throws InterruptedException {
+        long remainingNanos = wait.toNanos();
+        lock.lock();
+        try {
+            while (true) {
+                long firstOffset = lastOffset - size + 1;
+                if (!this.logId.equals(logId) || afterOffset < firstOffset - 1 || afterOffset > lastOffset) {
+                    return Optional.empty();
+                }
+                if (afterOffset < lastOffset || remainingNanos <= 0) {
+                    long toOffset = Math.min(lastOffset, afterOffset + limit);
+                    List<UserReplicationRecord> batch = new ArrayList<>((int) (toOffset - afterOffset));
+                    for (long offset = afterOffset + 1; offset <= toOffset; offset++) {
+                        batch.add(records[(int) (offset % records.length)]);
+                    }
+                    return Optional.of(batch);
+                }
+                remainingNanos = recordsAppended.awaitNanos(remainingNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all stored users in the format of {@link UserReplicationProtocol#writeUsers}. Callers read the
+     * {@link #getPosition() position} first; the users written reflect every record up to it.
+     */
+    public void writeSnapshot(DataOutput output) throws IOException {
+        try (Stream<User> users = userStore.streamAll()) {
+            UserReplicationProtocol.writeUsers(output, users.iterator());
+        }
+    }
+
+    @Override
+    public void onInsert(User user) {
+        append(user.getId(), user);
+    }
+
+    @Override
+    public void onUpdate(User previousUser, User user) {
+        append(user.getId(), user);
+    }
+
+    @Override
+    public void onDelete(User user) {
+        append(user.getId(), null);
+    }
+
+    @Override
+    public void onLoad(Collection<User> users) {
+        // the records no longer lead from any earlier state to the new one, so followers have to take a snapshot
+        lock.lock();
+        try {
+            Arrays.fill(records, null);
+            size = 0;
+            logId = UUID.randomUUID().toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(long userId, User user) {
+        long timestamp = System.currentTimeMillis();
+        lock.lock();
+        try {
+            lastOffset++;
+            records[(int) (lastOffset % records.length)] = new UserReplicationRecord(lastOffset, timestamp, userId, user);
+            size = Math.min(size + 1, records.length);
+            recordsAppended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public record Position(String logId, long offset) {
+    }
+}
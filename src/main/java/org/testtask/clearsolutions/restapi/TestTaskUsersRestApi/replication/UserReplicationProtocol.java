@@ -0,0 +1,82 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence.UserRecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Binary bodies exchanged between a leader and its followers. A log batch is a sequence of
+ * {@code [byte type][long offset][long timestamp][user or id]} entries and a snapshot a sequence of
+ * {@code [byte type][user]} entries, users in the layout of {@link UserRecordCodec}. Both end with a {@code 0} byte,
+ * so a body cut short by a dropped connection fails to parse instead of passing for a shorter one.
+ */
+public final class UserReplicationProtocol {
+
+    public static final String LOG_ID_HEADER = "Replication-Log-Id";
+    public static final String OFFSET_HEADER = "Replication-Offset";
+    public static final String LAG_HEADER = "Replication-Lag-Millis";
+
+    private static final byte END = 0;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte USER = 3;
+
+    private UserReplicationProtocol() {
+    }
+
+    public static void writeRecords(DataOutput output, List<UserReplicationRecord> records) throws IOException {
+        for (UserReplicationRecord record : records) {
+            output.writeByte(record.isDelete() ? DELETE : PUT);
+            output.writeLong(record.offset());
+            output.writeLong(record.timestamp());
+            if (record.isDelete()) {
+                output.writeLong(record.userId());
+            } else {
+                UserRecordCodec.writeUser(output, record.user());
+            }
+        }
+        output.writeByte(END);
+    }
+
+    public static List<UserReplicationRecord> readRecords(DataInput input) throws IOException {
+        List<UserReplicationRecord> records = new ArrayList<>();
+        for (byte type = input.readByte(); type != END; type = input.readByte()) {
+            long offset = input.readLong();
+            long timestamp = input.readLong();
+            if (type == DELETE) {
+                records.add(new UserReplicationRecord(offset, timestamp, input.readLong(), null));
+            } else if (type == PUT) {
+                User user = UserRecordCodec.readUser(input);
+                records.add(new UserReplicationRecord(offset, timestamp, user.getId(), user));
+            } else {
+                throw new IOException("Unknown replication record type " + type);
+            }
+        }
+        return records;
+    }
+
+    public static void writeUsers(DataOutput output, Iterator<User> users) throws IOException {
+        while (users.hasNext()) {
+            output.writeByte(USER);
+            UserRecordCodec.writeUser(output, users.next());
+        }
+        output.writeByte(END);
+    }
+
+    public static List<User> readUsers(DataInput input) throws IOException {
+        List<User> users = new ArrayList<>();
+        for (byte type = input.readByte(); type != END; type = input.readByte()) {
+            if (type != USER) {
+                throw new IOException("Unknown snapshot entry type " + type);
+            }
+            users.add(UserRecordCodec.readUser(input));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,14 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+/**
+ * One mutation of the leader's store: the full user after a create or update, or {@code null} after a delete.
+ * {@code timestamp} is the leader's wall clock time of the mutation in epoch milliseconds.
+ */
+public record UserReplicationRecord(long offset, long timestamp, long userId, User user) {
+
+    public boolean isDelete() {
+        return user == null;
+    }
+}
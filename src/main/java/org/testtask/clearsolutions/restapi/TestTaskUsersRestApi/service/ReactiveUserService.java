@@ -0,0 +1,33 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non-blocking view of {@link UserService} over the same store. Lookups complete empty for unknown users; writes
+ * fail with the exceptions of {@link UserService}. The {@link Flux} results read the store one page at a time as
+ * the subscriber requests more users, so a large result never has to be held in memory at once.
+ */
+public interface ReactiveUserService {
+    Mono<User> createUser(User user);
+
+    Mono<User> findUserById(long id);
+
+    Mono<User> updateUserById(long id, User updatedUser, long expectedVersion);
+
+    Mono<User> patchUserById(long id, UserPatch patch, long expectedVersion);
+
+    Mono<Void> deleteUserById(long id);
+
+    Flux<User> getAllUsers();
+
+    /**
+     * Rejects an invalid range right away rather than through the returned {@link Flux}, so that a caller can still
+     * answer with an error before it starts streaming.
+     */
+    Flux<User> getUsersByBirthDateRange(LocalDate from, LocalDate to);
+}
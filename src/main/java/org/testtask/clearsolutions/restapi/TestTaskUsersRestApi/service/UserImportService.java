@@ -0,0 +1,11 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface UserImportService {
+    UserImportProgress importUsers(InputStream ndjson, Consumer<UserImportProgress> progressListener) throws IOException;
+}
@@ -1,23 +1,57 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service;
 
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserService {
     User createUser(User user);
 
+    List<User> createUsers(List<User> users);
+
     Optional<User> findUserByEmail(String email);
 
     Optional<User> findUserById(long id);
 
     User updateUserById(long id, User updatedUser);
 
+    User updateUserById(long id, User updatedUser, long expectedVersion);
+
+    /**
+     * Applies the patch to the user with the given version, or to the current version if {@code expectedVersion}
+     * is {@link org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore#ANY_VERSION}.
+     */
+    User patchUserById(long id, UserPatch patch, long expectedVersion);
+
     void deleteUserById(long id);
 
     List<User> getAllUsers();
 
+    UserPage getUsers(String cursor, int limit);
+
+    Stream<User> streamUsers();
+
     List<User> getUsersByBirthDateRange(LocalDate from, LocalDate to);
+
+    UserPage getUsersByBirthDateRange(LocalDate from, LocalDate to, String cursor, int limit);
+
+    /**
+     * Returns up to {@code limit} users whose email, first name or last name starts with the query, ignoring
+     * accents and case, in alphabetical order of the matching name.
+     */
+    List<User> searchUsers(String query, int limit);
+
+    /**
+     * Returns the user counts by birth month and by age band, the first band being the users younger than the
+     * minimum age.
+     */
+    UserStats getStats();
+
+    long getModificationCount();
 }
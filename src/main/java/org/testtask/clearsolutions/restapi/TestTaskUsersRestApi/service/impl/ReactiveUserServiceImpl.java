@@ -0,0 +1,91 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.ReactiveUserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Delegates to {@link UserService}, so validation, versions and persistence stay the same as for the blocking API.
+ * Reads only touch the in-memory store and run on the subscribing thread; writes can wait for the write-ahead log
+ * to be fsynced and run on a scheduler meant for blocking work.
+ */
+@Service
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+
+    private final UserService userService;
+    private final int pageSize;
+    private final Scheduler writeScheduler;
+
+    @Autowired
+    public ReactiveUserServiceImpl(UserService userService, @Value("${user.page.max-limit}") int pageSize) {
+        this(userService, pageSize, Schedulers.boundedElastic());
+    }
+
+    ReactiveUserServiceImpl(UserService userService, int pageSize, Scheduler writeScheduler) {
+        this.userService = userService;
+        this.pageSize = pageSize;
+        this.writeScheduler = writeScheduler;
+    }
+
+    @Override
+    public Mono<User> createUser(User user) {
+        return Mono.fromCallable(() -> userService.createUser(user)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Mono<User> findUserById(long id) {
+        return Mono.defer(() -> Mono.justOrEmpty(userService.findUserById(id)));
+    }
+
+    @Override
+    public Mono<User> updateUserById(long id, User updatedUser, long expectedVersion) {
+        return Mono.fromCallable(() -> userService.updateUserById(id, updatedUser, expectedVersion)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Mono<User> patchUserById(long id, UserPatch patch, long expectedVersion) {
+        return Mono.fromCallable(() -> userService.patchUserById(id, patch, expectedVersion)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Mono<Void> deleteUserById(long id) {
+        return Mono.<Void>fromRunnable(() -> userService.deleteUserById(id)).subscribeOn(writeScheduler);
+    }
+
+    @Override
+    public Flux<User> getAllUsers() {
+        return pages(cursor -> userService.getUsers(cursor, pageSize));
+    }
+
+    @Override
+    public Flux<User> getUsersByBirthDateRange(LocalDate from, LocalDate to) {
+        UserServiceImpl.validateBirthDateRange(from, to);
+        return pages(cursor -> userService.getUsersByBirthDateRange(from, to, cursor, pageSize));
+    }
+
+    // the next page is only read once the subscriber has requested the users of the previous one
+    private static Flux<User> pages(Function<String, UserPage> pageReader) {
+        return Flux.<UserPage, Optional<String>>generate(Optional::empty, (cursor, sink) -> {
+                    UserPage page = pageReader.apply(cursor.orElse(null));
+                    sink.next(page);
+                    if (!page.hasNext()) {
+                        sink.complete();
+                    }
+                    return Optional.ofNullable(page.nextCursor());
+                })
+                .concatMapIterable(UserPage::users, 1);
+    }
+}
@@ -0,0 +1,69 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the sort key of the last user of the previous page, encoded as URL-safe Base64.
+ */
+final class UserCursor {
+
+    private static final String ID_PREFIX = "i:";
+    private static final String BIRTH_DATE_PREFIX = "b:";
+
+    private UserCursor() {
+    }
+
+    static String ofId(User user) {
+        return encode(ID_PREFIX + user.getId());
+    }
+
+    static String ofBirthDate(User user) {
+        return encode(BIRTH_DATE_PREFIX + user.getBirthDate().toEpochDay() + ":" + user.getId());
+    }
+
+    static long decodeId(String cursor) {
+        String value = decode(cursor, ID_PREFIX);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            throw invalidCursor(cursor);
+        }
+    }
+
+    /**
+     * Returns {@code [epochDay, id]}.
+     */
+    static long[] decodeBirthDate(String cursor) {
+        String value = decode(cursor, BIRTH_DATE_PREFIX);
+        int separator = value.indexOf(':');
+        try {
+            return new long[]{Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1))};
+        } catch (RuntimeException exception) {
+            throw invalidCursor(cursor);
+        }
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String decode(String cursor, String prefix) {
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException exception) {
+            throw invalidCursor(cursor);
+        }
+        if (!value.startsWith(prefix)) {
+            throw invalidCursor(cursor);
+        }
+        return value.substring(prefix.length());
+    }
+
+    private static IllegalArgumentException invalidCursor(String cursor) {
+        return new IllegalArgumentException("Invalid cursor " + cursor);
+    }
+}
@@ -0,0 +1,121 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserDto;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserMapper;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserImportService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Reads NDJSON line by line and creates users in chunks, so memory use is bounded by the chunk size.
+ * The input is only read while the previous chunk is being stored, which throttles the client through TCP flow control.
+ */
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private final UserService userService;
+    private final ObjectReader userDtoReader;
+
+    @Value("${user.import.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    @Autowired
+    public UserImportServiceImpl(UserService userService, ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.userDtoReader = objectMapper.readerFor(UserDto.class);
+    }
+
+    public UserImportServiceImpl(UserService userService, ObjectMapper objectMapper, int chunkSize) {
+        this(userService, objectMapper);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public UserImportProgress importUsers(InputStream ndjson, Consumer<UserImportProgress> progressListener) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        List<User> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkLines = new ArrayList<>(chunkSize);
+        List<BatchItemError> chunkErrors = new ArrayList<>();
+        long processed = 0;
+        long created = 0;
+        long rejected = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            processed++;
+            try {
+                chunk.add(UserMapper.INSTANCE.toUser(userDtoReader.readValue(line)));
+                chunkLines.add(lineNumber);
+            } catch (JsonProcessingException exception) {
+                chunkErrors.add(new BatchItemError(lineNumber, List.of("Invalid user JSON: " + exception.getOriginalMessage())));
+            }
+
+            if (chunk.size() + chunkErrors.size() >= chunkSize) {
+                created += createChunk(chunk, chunkLines, chunkErrors);
+                rejected += chunkErrors.size();
+                chunkErrors.sort(Comparator.comparingInt(BatchItemError::getIndex));
+                progressListener.accept(new UserImportProgress(processed, created, rejected, false, List.copyOf(chunkErrors)));
+                chunk.clear();
+                chunkLines.clear();
+                chunkErrors.clear();
+            }
+        }
+
+        created += createChunk(chunk, chunkLines, chunkErrors);
+        rejected += chunkErrors.size();
+        chunkErrors.sort(Comparator.comparingInt(BatchItemError::getIndex));
+        UserImportProgress result = new UserImportProgress(processed, created, rejected, true, List.copyOf(chunkErrors));
+        progressListener.accept(result);
+        return result;
+    }
+
+    private int createChunk(List<User> chunk, List<Integer> chunkLines, List<BatchItemError> chunkErrors) {
+        List<User> users = new ArrayList<>(chunk);
+        List<Integer> lines = new ArrayList<>(chunkLines);
+        while (!users.isEmpty()) {
+            try {
+                return userService.createUsers(users).size();
+            } catch (BatchValidationException exception) {
+                // drop the rejected users and store the rest; a retry can only fail again on a concurrent email clash
+                Set<Integer> rejectedIndexes = new HashSet<>();
+                for (BatchItemError error : exception.getErrors()) {
+                    rejectedIndexes.add(error.getIndex());
+                    chunkErrors.add(new BatchItemError(lines.get(error.getIndex()), error.getMessages()));
+                }
+                List<User> remainingUsers = new ArrayList<>(users.size() - rejectedIndexes.size());
+                List<Integer> remainingLines = new ArrayList<>(users.size() - rejectedIndexes.size());
+                for (int i = 0; i < users.size(); i++) {
+                    if (!rejectedIndexes.contains(i)) {
+                        remainingUsers.add(users.get(i));
+                        remainingLines.add(lines.get(i));
+                    }
+                }
+                users = remainingUsers;
+                lines = remainingLines;
+            }
+        }
+        return 0;
+    }
+}
@@ -1,37 +1,84 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.annotation.PostConstruct;
-import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserNotFoundException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserBirthDateStatistics;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserPrefixIndex;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "users.service", percentiles = {0.5, 0.99, 0.999}, histogram = true)
 public class UserServiceImpl implements UserService {
 
-    private List<User> users = new ArrayList<>();
-    private long nextId = 1;
+    private static final int MAX_PATCH_ATTEMPTS = 8;
+
+    private final UserStore userStore;
+    private final UserPrefixIndex userPrefixIndex;
+    private final UserBirthDateStatistics userBirthDateStatistics;
 
     @Value("${user.minimum.age}")
     private int minAge;
 
-    private Validator validator;
+    @Value("${user.page.max-limit:1000}")
+    private int maxPageLimit = 1000;
+
+    @Value("${user.batch.max-size:10000}")
+    private int maxBatchSize = 10000;
+
+    @Value("${user.stats.age-band-width:10}")
+    private int ageBandWidth = 10;
+
+    @Value("${user.stats.age-bands:6}")
+    private int ageBands = 6;
+
+    @Value("${user.replication.role:none}")
+    private String replicationRole = "none";
+
+    private final UserValidator userValidator;
 
-    @Autowired
     public UserServiceImpl(Validator validator) {
-        this.validator = validator;
+        this(validator, new InMemoryUserStore());
+    }
+
+    public UserServiceImpl(Validator validator, UserStore userStore) {
+        this(validator, userStore, UserPrefixIndex.of(userStore), UserBirthDateStatistics.of(userStore));
+    }
+
+    @Autowired
+    public UserServiceImpl(Validator validator, UserStore userStore, UserPrefixIndex userPrefixIndex,
+                           UserBirthDateStatistics userBirthDateStatistics) {
+        this.userValidator = new UserValidator(validator, Clock.systemDefaultZone());
+        this.userStore = userStore;
+        this.userPrefixIndex = userPrefixIndex;
+        this.userBirthDateStatistics = userBirthDateStatistics;
     }
 
     @PostConstruct
     private void initialize() {
-        users.clear();
+        // users recovered from the write-ahead log take the place of the demo data, and followers get the leader's
+        if (userStore.size() > 0 || "follower".equalsIgnoreCase(replicationRole)) {
+            return;
+        }
 
         createUser(
                 User.builder()
@@ -64,101 +111,183 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User createUser(User user) {
-        if (findUserByEmail(user.getEmail()).isPresent()) {
-            throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
+        userValidator.validate(user, minAge);
+        return userStore.insert(user);
+    }
+
+    @Override
+    public List<User> createUsers(List<User> users) {
+        if (users.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize + " users");
         }
 
-        validateUser(user);
-        while (findUserById(nextId).isPresent()) {
-            nextId++;
+        List<BatchItemError> errors = new ArrayList<>();
+        Set<String> batchEmails = new HashSet<>(users.size() * 2);
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (user == null) {
+                errors.add(new BatchItemError(i, List.of("User is required and cannot be null")));
+                continue;
+            }
+            List<String> messages = userValidator.getErrors(user, minAge);
+            String email = user.getEmail();
+            if (email != null && (!batchEmails.add(email) || userStore.findByEmail(email).isPresent())) {
+                messages.add("User with email " + email + " already exists");
+            }
+            if (!messages.isEmpty()) {
+                errors.add(new BatchItemError(i, messages));
+            }
         }
-        user.setId(nextId++);
-        users.add(user);
-        return user;
+        if (!errors.isEmpty()) {
+            throw new BatchValidationException(errors);
+        }
+
+        // the store re-checks emails under its write lock in case a concurrent create took one meanwhile
+        return userStore.insertAll(users);
     }
 
     @Override
     public Optional<User> findUserById(long id) {
-        return users.stream()
-                .filter(user -> user.getId() == id)
-                .findFirst();
+        return userStore.findById(id);
     }
 
     @Override
     public User updateUserById(long id, User updatedUser) {
-        User user = findUserById(id)
-                .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+        return updateUserById(id, updatedUser, UserStore.ANY_VERSION);
+    }
 
-        if (findUserByEmail(updatedUser.getEmail()).isPresent()) {
-            if (findUserByEmail(updatedUser.getEmail()).get().getId() != id) {
-                throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
-            }
+    @Override
+    public User updateUserById(long id, User updatedUser, long expectedVersion) {
+        if (findUserById(id).isEmpty()) {
+            throw new UserNotFoundException("User with id " + id + " not found");
         }
 
-        validateUser(updatedUser);
+        userValidator.validate(updatedUser, minAge);
 
-        user.setEmail(updatedUser.getEmail());
-        user.setFirstName(updatedUser.getFirstName());
-        user.setLastName(updatedUser.getLastName());
-        user.setBirthDate(updatedUser.getBirthDate());
-        user.setAddress(updatedUser.getAddress());
-        user.setPhoneNumber(updatedUser.getPhoneNumber());
-        return user;
+        return userStore.update(id, updatedUser, expectedVersion)
+                .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+    }
+
+    @Override
+    public User patchUserById(long id, UserPatch patch, long expectedVersion) {
+        for (int attempt = 1; ; attempt++) {
+            User user = findUserById(id)
+                    .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+            if (expectedVersion != UserStore.ANY_VERSION && user.getVersion() != expectedVersion) {
+                throw new UserVersionMismatchException("User with id " + id + " has version " + user.getVersion()
+                        + ", expected " + expectedVersion);
+            }
+            User patchedUser = patch.applyTo(user);
+            // the other fields were valid when they were stored
+            userValidator.validateProperties(patchedUser, patch.getTouchedFields(), minAge);
+            try {
+                // the patch was computed from this version, so it must not overwrite a newer one
+                return userStore.update(id, patchedUser, user.getVersion())
+                        .orElseThrow(() -> new UserNotFoundException("User with id " + id + " not found"));
+            } catch (UserVersionMismatchException exception) {
+                // without an expected version the caller asked for the patch, not for a particular version
+                if (expectedVersion != UserStore.ANY_VERSION || attempt == MAX_PATCH_ATTEMPTS) {
+                    throw exception;
+                }
+            }
+        }
     }
 
     @Override
     public void deleteUserById(long id) {
-        if (!users.removeIf(user -> user.getId() == id)) {
+        if (userStore.delete(id).isEmpty()) {
             throw new UserNotFoundException("User with id " + id + " not found");
         }
     }
 
     @Override
     public Optional<User> findUserByEmail(String email) {
-        return users.stream()
-                .filter(user -> user.getEmail().equals(email))
-                .findFirst();
+        return userStore.findByEmail(email);
     }
 
     @Override
     public List<User> getAllUsers() {
-        return new ArrayList<>(users);
+        return userStore.findAll();
+    }
+
+    @Override
+    public UserPage getUsers(String cursor, int limit) {
+        validatePageLimit(limit);
+        long afterId = cursor == null ? 0 : UserCursor.decodeId(cursor);
+        List<User> users = userStore.findPage(afterId, limit + 1);
+        return toPage(users, limit, UserCursor::ofId);
+    }
+
+    @Override
+    public Stream<User> streamUsers() {
+        return userStore.streamAll();
     }
 
     @Override
     public List<User> getUsersByBirthDateRange(LocalDate from, LocalDate to) {
-        if (from.isAfter(to)) {
-            throw new IllegalArgumentException("Birth date range start " + from + " is after range end " + to);
+        validateBirthDateRange(from, to);
+        return userStore.findByBirthDateRange(from, to);
+    }
+
+    @Override
+    public UserPage getUsersByBirthDateRange(LocalDate from, LocalDate to, String cursor, int limit) {
+        validateBirthDateRange(from, to);
+        validatePageLimit(limit);
+        long[] after = cursor == null ? new long[]{from.toEpochDay(), Long.MAX_VALUE} : UserCursor.decodeBirthDate(cursor);
+        List<User> users = userStore.findByBirthDateRange(from, to, after[0], after[1], limit + 1);
+        return toPage(users, limit, UserCursor::ofBirthDate);
+    }
+
+    @Override
+    public List<User> searchUsers(String query, int limit) {
+        if (query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be blank");
         }
-        List<User> foundUsers = new ArrayList<>();
-        for (User user : users) {
-            if (user.getBirthDate().isAfter(from) && user.getBirthDate().isBefore(to)) {
-                foundUsers.add(user);
-            }
+        validatePageLimit(limit);
+        List<User> users = new ArrayList<>(limit);
+        for (long id : userPrefixIndex.findIdsByPrefix(query.strip(), limit)) {
+            // skips a user deleted since the index was read
+            userStore.findById(id).ifPresent(users::add);
         }
-        return foundUsers;
+        return users;
     }
 
-    public void setUsers(List<User> users) {
-        this.users = users;
+    @Override
+    public UserStats getStats() {
+        // [0, minAge), then ageBands bands of ageBandWidth years from minAge, the last one open
+        int[] ageBandStarts = new int[ageBands + 1];
+        for (int i = 1; i <= ageBands; i++) {
+            ageBandStarts[i] = minAge + (i - 1) * ageBandWidth;
+        }
+        return userBirthDateStatistics.getStats(LocalDate.now(), ageBandStarts);
     }
 
-    private boolean isOlderThanMinAge(LocalDate birthDate) {
-        return birthDate.plusYears(minAge).isBefore(LocalDate.now());
+    @Override
+    public long getModificationCount() {
+        return userStore.getModificationCount();
     }
 
-    private void validateUser(User user) {
-        if (!isOlderThanMinAge(user.getBirthDate())) {
-            throw new IllegalArgumentException("User must be at least " + minAge + " years old");
+    public void setUsers(List<User> users) {
+        userStore.load(users);
+    }
+
+    private UserPage toPage(List<User> users, int limit, Function<User, String> cursorFactory) {
+        if (users.size() <= limit) {
+            return new UserPage(users, null);
         }
+        List<User> page = users.subList(0, limit);
+        return new UserPage(page, cursorFactory.apply(page.get(limit - 1)));
+    }
 
-        Set<ConstraintViolation<User>> violations = validator.validate(user);
+    private void validatePageLimit(int limit) {
+        if (limit < 1 || limit > maxPageLimit) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + maxPageLimit);
+        }
+    }
 
-        if (!violations.isEmpty()) {
-            List<String> errorMessages = violations.stream()
-                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
-                    .toList();
-            throw new IllegalArgumentException("Provided User has errors: " + errorMessages);
+    static void validateBirthDateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Birth date range start " + from + " is after range end " + to);
         }
     }
 }
@@ -0,0 +1,118 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserBirthDateStatistics;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The one validation stage for users that are created, replaced or patched, shared by the single and the batch
+ * paths. The latest birth date that satisfies the minimum age is computed once per day rather than per user.
+ */
+final class UserValidator {
+
+    private final Validator validator;
+    private final Clock clock;
+
+    private volatile AgeCutoff ageCutoff;
+
+    UserValidator(Validator validator, Clock clock) {
+        this.validator = validator;
+        this.clock = clock;
+    }
+
+    /**
+     * Rejects an invalid user with the messages of its constraints, followed by the minimum age message if the user
+     * is too young. A user whose only problem is its age is rejected with the minimum age message alone.
+     */
+    void validate(User user, int minAge) {
+        requireValid(user, validator.validate(user), true, minAge);
+    }
+
+    /**
+     * Like {@link #validate(User, int)}, but only checks the given properties of the user.
+     */
+    void validateProperties(User user, Set<String> properties, int minAge) {
+        Set<ConstraintViolation<User>> violations = new LinkedHashSet<>();
+        for (String property : properties) {
+            violations.addAll(validator.validateProperty(user, property));
+        }
+        requireValid(user, violations, properties.contains("birthDate"), minAge);
+    }
+
+    /**
+     * Returns every problem of the user, in the same order and wording, for reporting per batch item.
+     */
+    List<String> getErrors(User user, int minAge) {
+        return getErrors(user, validator.validate(user), true, minAge);
+    }
+
+    // a missing or future birth date is reported by its constraints instead
+    boolean isOldEnough(LocalDate birthDate, int minAge) {
+        return birthDate == null || !birthDate.isAfter(getAgeCutoff(minAge).latestBirthDate());
+    }
+
+    private AgeCutoff getAgeCutoff(int minAge) {
+        AgeCutoff cutoff = ageCutoff;
+        if (cutoff == null || cutoff.minAge() != minAge || clock.millis() >= cutoff.validUntilMillis()) {
+            cutoff = AgeCutoff.of(LocalDate.now(clock), minAge, clock);
+            ageCutoff = cutoff;
+        }
+        return cutoff;
+    }
+
+    private void requireValid(User user, Set<ConstraintViolation<User>> violations, boolean checkAge, int minAge) {
+        List<String> errorMessages = getErrors(user, violations, checkAge, minAge);
+        if (errorMessages.isEmpty()) {
+            return;
+        }
+        if (violations.isEmpty()) {
+            throw new UserValidationException(minimumAgeMessage(minAge));
+        }
+        throw new UserValidationException("Provided User has errors: " + errorMessages);
+    }
+
+    private List<String> getErrors(User user, Set<ConstraintViolation<User>> violations, boolean checkAge, int minAge) {
+        List<String> errorMessages = new ArrayList<>(toMessages(violations));
+        if (checkAge && !hasBirthDateViolation(violations) && !isOldEnough(user.getBirthDate(), minAge)) {
+            errorMessages.add(minimumAgeMessage(minAge));
+        }
+        return errorMessages;
+    }
+
+    private static boolean hasBirthDateViolation(Set<ConstraintViolation<User>> violations) {
+        for (ConstraintViolation<User> violation : violations) {
+            if (violation.getPropertyPath().toString().equals("birthDate")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String minimumAgeMessage(int minAge) {
+        return "User must be at least " + minAge + " years old";
+    }
+
+    private static List<String> toMessages(Set<ConstraintViolation<User>> violations) {
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .toList();
+    }
+
+    private record AgeCutoff(int minAge, LocalDate latestBirthDate, long validUntilMillis) {
+
+        static AgeCutoff of(LocalDate today, int minAge, Clock clock) {
+            LocalDate latestBirthDate = UserBirthDateStatistics.latestBirthDateOfAge(today, minAge);
+            long validUntilMillis = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+            return new AgeCutoff(minAge, latestBirthDate, validUntilMillis);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Birth date counters of the users of a store, kept up to date as one of its listeners so statistics never read the
+ * users. Births are counted per month, and per day in a Fenwick tree whose prefix sums count the users born up to a
+ * date, which turns an age band into two {@code O(log days)} lookups. Both cover the years 1800 to 2199; births
+ * outside are counted on the nearest covered day.
+ */
+public class UserBirthDateStatistics implements UserStoreListener {
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(1800, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2199, 12, 31);
+    private static final int FIRST_YEAR = FIRST_DAY.getYear();
+    private static final int DAYS = (int) (LAST_DAY.toEpochDay() - FIRST_DAY.toEpochDay() + 1);
+    private static final int MONTHS = (LAST_DAY.getYear() - FIRST_YEAR + 1) * 12;
+
+    // a java.util.concurrent lock, because counting runs under the write lock of the store on request threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private final long[] birthsUpToDay = new long[DAYS + 1];
+    private final long[] birthsPerMonth = new long[MONTHS];
+    private long total;
+
+    private UserBirthDateStatistics() {
+    }
+
+    /**
+     * Counts the users of the store and keeps following its writes, which wait until the existing users are counted.
+     */
+    public static UserBirthDateStatistics of(UserStore userStore) {
+        UserBirthDateStatistics statistics = new UserBirthDateStatistics();
+        userStore.writeBatch(() -> {
+            userStore.addListener(statistics);
+            try (Stream<User> users = userStore.streamAll()) {
+                users.forEach(user -> statistics.count(user.getBirthDate(), 1));
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Returns the counts by birth month and by the age bands starting at the given ascending ages, on {@code today}.
+     */
+    public UserStats getStats(LocalDate today, int[] ageBandStarts) {
+        lock.lock();
+        try {
+            return computeStats(today, ageBandStarts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the latest birth date of someone at least {@code age} years old on {@code today}: one whose birthday
+     * passed before today. User validation applies the minimum age by the same rule.
+     */
+    public static LocalDate latestBirthDateOfAge(LocalDate today, int age) {
+        // plusYears moves February 29 to the 28th
+        LocalDate latestBirthDate = today.minusYears(age);
+        while (!latestBirthDate.plusYears(age).isBefore(today)) {
+            latestBirthDate = latestBirthDate.minusDays(1);
+        }
+        return latestBirthDate;
+    }
+
+    private UserStats computeStats(LocalDate today, int[] ageBandStarts) {
+        List<UserStats.BirthYear> birthYears = new ArrayList<>();
+        for (int year = 0; year < MONTHS / 12; year++) {
+            Map<Integer, Long> months = new TreeMap<>();
+            long count = 0;
+            for (int month = 0; month < 12; month++) {
+                long births = birthsPerMonth[year * 12 + month];
+                if (births > 0) {
+                    months.put(month + 1, births);
+                    count += births;
+                }
+            }
+            if (count > 0) {
+                birthYears.add(new UserStats.BirthYear(FIRST_YEAR + year, count, months));
+            }
+        }
+
+        List<UserStats.AgeBand> ageBands = new ArrayList<>(ageBandStarts.length);
+        for (int i = 0; i < ageBandStarts.length; i++) {
+            long bornUpToStart = bornUpTo(latestBirthDateOfAge(today, ageBandStarts[i]));
+            if (i + 1 < ageBandStarts.length) {
+                long bornUpToEnd = bornUpTo(latestBirthDateOfAge(today, ageBandStarts[i + 1]));
+                ageBands.add(new UserStats.AgeBand(ageBandStarts[i], ageBandStarts[i + 1], bornUpToStart - bornUpToEnd));
+            } else {
+                ageBands.add(new UserStats.AgeBand(ageBandStarts[i], null, bornUpToStart));
+            }
+        }
+        return new UserStats(total, birthYears, ageBands);
+    }
+
+    @Override
+    public void onInsert(User user) {
+        count(user.getBirthDate(), 1);
+    }
+
+    @Override
+    public void onUpdate(User previousUser, User user) {
+        if (!previousUser.getBirthDate().equals(user.getBirthDate())) {
+            count(previousUser.getBirthDate(), -1);
+            count(user.getBirthDate(), 1);
+        }
+    }
+
+    @Override
+    public void onDelete(User user) {
+        count(user.getBirthDate(), -1);
+    }
+
+    @Override
+    public void onLoad(Collection<User> users) {
+        lock.lock();
+        try {
+            Arrays.fill(birthsUpToDay, 0);
+            Arrays.fill(birthsPerMonth, 0);
+            total = 0;
+            users.forEach(user -> count(user.getBirthDate(), 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void count(LocalDate birthDate, int delta) {
+        LocalDate day = birthDate.isBefore(FIRST_DAY) ? FIRST_DAY : birthDate.isAfter(LAST_DAY) ? LAST_DAY : birthDate;
+        lock.lock();
+        try {
+            for (int i = (int) (day.toEpochDay() - FIRST_DAY.toEpochDay()) + 1; i <= DAYS; i += i & -i) {
+                birthsUpToDay[i] += delta;
+            }
+            birthsPerMonth[(day.getYear() - FIRST_YEAR) * 12 + day.getMonthValue() - 1] += delta;
+            total += delta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long bornUpTo(LocalDate date) {
+        if (date.isBefore(FIRST_DAY)) {
+            return 0;
+        }
+        long count = 0;
+        for (int i = (int) (Math.min(date.toEpochDay(), LAST_DAY.toEpochDay()) - FIRST_DAY.toEpochDay()) + 1; i > 0; i -= i & -i) {
+            count += birthsUpToDay[i];
+        }
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Sorted index of the normalized email, first name and last name of every user of a store, for search as you type.
+ * Names are normalized by dropping accents and case, so {@code "zo"} finds {@code "Zoë"}. The index follows the
+ * store as one of its listeners; a query seeks the first entry with the prefix in a skip list and reads the
+ * following entries without locking, so it costs {@code O(log n + limit)} whatever the number of matches.
+ */
+public class UserPrefixIndex implements UserStoreListener {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final NavigableSet<Term> terms = new ConcurrentSkipListSet<>();
+
+    private UserPrefixIndex() {
+    }
+
+    /**
+     * Indexes the users of the store and keeps following its writes, which wait until the existing users are indexed.
+     */
+    public static UserPrefixIndex of(UserStore userStore) {
+        UserPrefixIndex index = new UserPrefixIndex();
+        userStore.writeBatch(() -> {
+            userStore.addListener(index);
+            try (Stream<User> users = userStore.streamAll()) {
+                users.forEach(index::add);
+            }
+        });
+        return index;
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} users with an email, first name or last name that starts with the
+     * prefix, ignoring accents and case. Users come in alphabetical order of their matching names, so exact
+     * matches come before longer names, then by id.
+     */
+    public List<Long> findIdsByPrefix(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Term term : terms.tailSet(new Term(normalizedPrefix, Long.MIN_VALUE))) {
+            if (ids.size() == limit || !term.text.startsWith(normalizedPrefix)) {
+                break;
+            }
+            // a user whose names share the prefix comes once, at its first name in order
+            ids.add(term.userId);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    @Override
+    public void onInsert(User user) {
+        add(user);
+    }
+
+    @Override
+    public void onUpdate(User previousUser, User user) {
+        remove(previousUser);
+        add(user);
+    }
+
+    @Override
+    public void onDelete(User user) {
+        remove(user);
+    }
+
+    @Override
+    public void onLoad(Collection<User> users) {
+        terms.clear();
+        users.forEach(this::add);
+    }
+
+    static String normalize(String text) {
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) >= 0x80) {
+                return COMBINING_MARKS.matcher(Normalizer.normalize(lowerCase, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lowerCase;
+    }
+
+    private void add(User user) {
+        forEachName(user, name -> terms.add(new Term(normalize(name), user.getId())));
+    }
+
+    private void remove(User user) {
+        forEachName(user, name -> terms.remove(new Term(normalize(name), user.getId())));
+    }
+
+    private static void forEachName(User user, Consumer<String> action) {
+        for (String name : new String[]{user.getEmail(), user.getFirstName(), user.getLastName()}) {
+            if (name != null && !name.isEmpty()) {
+                action.accept(name);
+            }
+        }
+    }
+
+    private record Term(String text, long userId) implements Comparable<Term> {
+
+        @Override
+        public int compareTo(Term other) {
+            int result = text.compareTo(other.text);
+            return result != 0 ? result : Long.compare(userId, other.userId);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface UserStore {
+
+    /**
+     * Expected version that accepts any current version of the user.
+     */
+    long ANY_VERSION = -1;
+
+    User insert(User user);
+
+    /**
+     * Inserts all users or none of them. Fails with a
+     * {@link org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException}
+     * listing every user whose email is already taken, either by a stored user or by an earlier user of the batch.
+     */
+    List<User> insertAll(List<User> users);
+
+    Optional<User> findById(long id);
+
+    Optional<User> findByEmail(String email);
+
+    default Optional<User> update(long id, User updatedUser) {
+        return update(id, updatedUser, ANY_VERSION);
+    }
+
+    /**
+     * Replaces the user with a copy of {@code updatedUser} whose version is one higher. Fails with a
+     * {@link org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException}
+     * if {@code expectedVersion} is not {@link #ANY_VERSION} and differs from the stored version.
+     */
+    Optional<User> update(long id, User updatedUser, long expectedVersion);
+
+    Optional<User> delete(long id);
+
+    List<User> findAll();
+
+    /**
+     * Returns up to {@code limit} users with an id greater than {@code afterId}, ordered by id.
+     */
+    List<User> findPage(long afterId, int limit);
+
+    /**
+     * Lazily walks all users in id order. Every user is a consistent record and appears at most once,
+     * even when writes happen while the stream is consumed.
+     */
+    Stream<User> streamAll();
+
+    /**
+     * Returns users born strictly after {@code from} and strictly before {@code to}, ordered by birth date.
+     */
+    List<User> findByBirthDateRange(LocalDate from, LocalDate to);
+
+    /**
+     * Same as {@link #findByBirthDateRange(LocalDate, LocalDate)}, but returns at most {@code limit} users
+     * that follow the user with birth date {@code afterEpochDay} and id {@code afterId} in (birth date, id) order.
+     */
+    List<User> findByBirthDateRange(LocalDate from, LocalDate to, long afterEpochDay, long afterId, int limit);
+
+    int size();
+
+    /**
+     * Returns a counter that grows with every change of the store, so an unchanged value means unchanged contents.
+     */
+    long getModificationCount();
+
+    /**
+     * Returns the current number of entries of each index by index name. The names never change for a store, and
+     * computing the sizes must be cheap enough to be polled by metrics.
+     */
+    Map<String, Long> getIndexSizes();
+
+    void load(Collection<User> users);
+
+    /**
+     * Puts the user under its own id, replacing any stored user with that id. Used to apply log records to a live store,
+     * so it skips the email check and drops the email index entry of a stale owner instead.
+     */
+    void restore(User user);
+
+    /**
+     * Runs the writes of this store made by {@code writes} as one batch: other writers wait until all of them are
+     * done, and {@link UserStoreListener#afterWrite()} runs once after the last of them instead of after each.
+     */
+    void writeBatch(Runnable writes);
+
+    void addListener(UserStoreListener listener);
+}
@@ -0,0 +1,30 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.util.Collection;
+
+/**
+ * Observes store mutations. The {@code on*} callbacks run on the writing thread while the store still holds its
+ * write lock, so they see mutations in their exact order and must return quickly without blocking.
+ */
+public interface UserStoreListener {
+    void onInsert(User user);
+
+    void onUpdate(User previousUser, User user);
+
+    void onDelete(User user);
+
+    /**
+     * Runs like the other {@code on*} callbacks when {@link UserStore#load(Collection)} replaced all users at once.
+     */
+    default void onLoad(Collection<User> users) {
+    }
+
+    /**
+     * Runs on the writing thread once the store released its write lock after one or more {@code on*} callbacks.
+     * This is the place to wait for slow work, such as a durable write, without holding up other writers.
+     */
+    default void afterWrite() {
+    }
+}
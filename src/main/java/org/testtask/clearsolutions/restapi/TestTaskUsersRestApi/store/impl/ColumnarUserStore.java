@@ -0,0 +1,722 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keeps users in columns instead of one object graph per user, for directories too large for the heap-based store:
+ * ids and birth dates are primitive arrays, names are dictionary encoded and the other strings live in off-heap
+ * UTF-8 buffers. {@link User} objects are only created for the users a read returns.
+ * <p>
+ * Slots are kept in id order, so ids are looked up by binary search. A deleted slot keeps its id with a
+ * {@link #DELETED} birth date until enough garbage accumulates to rebuild the columns. Emails are indexed by an
+ * open addressing table of slots. Birth date ranges are answered by scanning the birth date column.
+ * <p>
+ * Inserts and restores are cheapest in id order, which appends a slot. A restore of a lower id than the highest
+ * shifts the slots above it, so it costs time linear in the number of those slots, not in the size of the store.
+ * Concurrent inserts into a {@link ShardedUserStore} of columnar shards may reach a shard slightly out of order
+ * and pay this for the few slots between them.
+ */
+public class ColumnarUserStore implements UserStore {
+
+    private static final int DELETED = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int STREAM_PAGE_SIZE = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<UserStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by lock
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int[] birthEpochDays = new int[INITIAL_CAPACITY];
+    private int[] emailHashes = new int[INITIAL_CAPACITY];
+    private OffHeapStringColumn emails = new OffHeapStringColumn(INITIAL_CAPACITY);
+    private DictionaryStringColumn firstNames = new DictionaryStringColumn(INITIAL_CAPACITY);
+    private DictionaryStringColumn lastNames = new DictionaryStringColumn(INITIAL_CAPACITY);
+    private OffHeapStringColumn addresses = new OffHeapStringColumn(INITIAL_CAPACITY);
+    private OffHeapStringColumn phoneNumbers = new OffHeapStringColumn(INITIAL_CAPACITY);
+    private int[] emailTable = new int[2 * INITIAL_CAPACITY]; // slot + 1, 0 for a free entry
+    private int emailTableEntries;
+    private int slotCount;
+    private long nextId = 1;
+
+    private volatile int liveCount;
+    private volatile long modificationCount;
+
+    @Override
+    public User insert(User user) {
+        lock.writeLock().lock();
+        try {
+            if (findSlotByEmail(user.getEmail()) >= 0) {
+                throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
+            }
+            assignId(user);
+            user.setVersion(1);
+            appendSlot(user);
+            modificationCount++;
+            listeners.forEach(listener -> listener.onInsert(user));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+        return user;
+    }
+
+    @Override
+    public List<User> insertAll(List<User> users) {
+        lock.writeLock().lock();
+        try {
+            List<BatchItemError> errors = new ArrayList<>();
+            Set<String> batchEmails = new HashSet<>(users.size() * 2);
+            for (int i = 0; i < users.size(); i++) {
+                String email = users.get(i).getEmail();
+                if (findSlotByEmail(email) >= 0 || !batchEmails.add(email)) {
+                    errors.add(new BatchItemError(i, List.of("User with email " + email + " already exists")));
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new BatchValidationException(errors);
+            }
+            for (User user : users) {
+                assignId(user);
+                user.setVersion(1);
+                appendSlot(user);
+                listeners.forEach(listener -> listener.onInsert(user));
+            }
+            modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+        return users;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(id);
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = findSlotByEmail(email);
+            return slot < 0 ? Optional.empty() : Optional.of(materialize(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> update(long id, User updatedUser, long expectedVersion) {
+        User user;
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(id);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            if (expectedVersion != ANY_VERSION && versions[slot] != expectedVersion) {
+                throw new UserVersionMismatchException("User with id " + id + " has version " + versions[slot]
+                        + ", expected " + expectedVersion);
+            }
+            int emailOwnerSlot = findSlotByEmail(updatedUser.getEmail());
+            if (emailOwnerSlot >= 0 && emailOwnerSlot != slot) {
+                throw new IllegalArgumentException("User with email " + updatedUser.getEmail() + " already exists");
+            }
+
+            User existingUser = materialize(slot);
+            user = User.builder()
+                    .id(id)
+                    .version(existingUser.getVersion() + 1)
+                    .email(updatedUser.getEmail())
+                    .firstName(updatedUser.getFirstName())
+                    .lastName(updatedUser.getLastName())
+                    .birthDate(updatedUser.getBirthDate())
+                    .address(updatedUser.getAddress())
+                    .phoneNumber(updatedUser.getPhoneNumber())
+                    .build();
+            replaceSlot(slot, existingUser, user);
+            modificationCount++;
+            listeners.forEach(listener -> listener.onUpdate(existingUser, user));
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+        return Optional.of(user);
+    }
+
+    @Override
+    public Optional<User> delete(long id) {
+        User removedUser;
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(id);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            removedUser = materialize(slot);
+            removeEmail(slot);
+            emails.clear(slot);
+            addresses.clear(slot);
+            phoneNumbers.clear(slot);
+            birthEpochDays[slot] = DELETED;
+            liveCount--;
+            modificationCount++;
+            listeners.forEach(listener -> listener.onDelete(removedUser));
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+        return Optional.of(removedUser);
+    }
+
+    @Override
+    public List<User> findAll() {
+        lock.readLock().lock();
+        try {
+            List<User> users = new ArrayList<>(liveCount);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (birthEpochDays[slot] != DELETED) {
+                    users.add(materialize(slot));
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<User> page = new ArrayList<>(Math.min(limit, 1024));
+            int index = Arrays.binarySearch(ids, 0, slotCount, afterId);
+            for (int slot = index >= 0 ? index + 1 : -index - 1; slot < slotCount && page.size() < limit; slot++) {
+                if (birthEpochDays[slot] != DELETED) {
+                    page.add(materialize(slot));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        // reads one page per lock acquisition, so a slow consumer never holds off writers
+        Iterator<User> users = new Iterator<>() {
+
+            private Iterator<User> page = Collections.emptyIterator();
+            private long lastId = Long.MIN_VALUE;
+            private boolean lastPage;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !lastPage) {
+                    List<User> nextPage = findPage(lastId, STREAM_PAGE_SIZE);
+                    lastPage = nextPage.size() < STREAM_PAGE_SIZE;
+                    if (!nextPage.isEmpty()) {
+                        lastId = nextPage.get(nextPage.size() - 1).getId();
+                    }
+                    page = nextPage.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+        return findByBirthDateRange(from, to, from.toEpochDay(), Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to, long afterEpochDay, long afterId, int limit) {
+        long fromEpochDay = from.toEpochDay();
+        long toEpochDay = to.toEpochDay();
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            // keys pack (epoch day, slot); slots are in id order, so the keys sort like (birth date, id)
+            long[] heap = new long[Math.min(limit, 1024)];
+            int heapSize = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                int epochDay = birthEpochDays[slot];
+                if (epochDay == DELETED || epochDay <= fromEpochDay || epochDay >= toEpochDay
+                        || epochDay < afterEpochDay || epochDay == afterEpochDay && ids[slot] <= afterId) {
+                    continue;
+                }
+                long key = (long) epochDay << 32 | slot;
+                if (heapSize < limit) {
+                    if (heapSize == heap.length) {
+                        heap = Arrays.copyOf(heap, (int) Math.min((long) heap.length * 2, limit));
+                    }
+                    heap[heapSize] = key;
+                    siftUp(heap, heapSize++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Arrays.sort(heap, 0, heapSize);
+            List<User> foundUsers = new ArrayList<>(heapSize);
+            for (int i = 0; i < heapSize; i++) {
+                foundUsers.add(materialize((int) heap[i]));
+            }
+            return foundUsers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return liveCount;
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    // slots include deleted users until the next compaction
+    @Override
+    public Map<String, Long> getIndexSizes() {
+        lock.readLock().lock();
+        try {
+            return Map.of("slots", (long) slotCount, "email", (long) emailTableEntries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void load(Collection<User> users) {
+        List<User> sortedUsers = new ArrayList<>(users);
+        sortedUsers.sort(Comparator.comparing(User::getId));
+        lock.writeLock().lock();
+        try {
+            resetColumns(Math.max(INITIAL_CAPACITY, sortedUsers.size()));
+            nextId = 1;
+            for (User user : sortedUsers) {
+                appendSlot(user);
+                nextId = Math.max(nextId, user.getId() + 1);
+            }
+            modificationCount++;
+            listeners.forEach(listener -> listener.onLoad(users));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restore(User user) {
+        lock.writeLock().lock();
+        try {
+            int emailOwnerSlot = findSlotByEmail(user.getEmail());
+            int index = Arrays.binarySearch(ids, 0, slotCount, user.getId());
+            if (emailOwnerSlot >= 0 && emailOwnerSlot != index) {
+                removeEmail(emailOwnerSlot);
+            }
+            if (index >= 0 && birthEpochDays[index] != DELETED) {
+                User existingUser = materialize(index);
+                replaceSlot(index, existingUser, user);
+                listeners.forEach(listener -> listener.onUpdate(existingUser, user));
+            } else {
+                if (index >= 0) {
+                    writeSlot(index, user);
+                    liveCount++;
+                } else if (-index - 1 == slotCount) {
+                    appendSlot(user);
+                } else {
+                    insertSlot(-index - 1, user);
+                }
+                listeners.forEach(listener -> listener.onInsert(user));
+            }
+            nextId = Math.max(nextId, user.getId() + 1);
+            modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void writeBatch(Runnable writes) {
+        lock.writeLock().lock();
+        try {
+            writes.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void addListener(UserStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the off-heap memory held by the string columns, including space of replaced values.
+     */
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return emails.getOffHeapBytes() + addresses.getOffHeapBytes() + phoneNumbers.getOffHeapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // callers hold the lock
+    private User materialize(int slot) {
+        return User.builder()
+                .id(ids[slot])
+                .version(versions[slot])
+                .email(emails.get(slot))
+                .firstName(firstNames.get(slot))
+                .lastName(lastNames.get(slot))
+                .birthDate(LocalDate.ofEpochDay(birthEpochDays[slot]))
+                .address(addresses.get(slot))
+                .phoneNumber(phoneNumbers.get(slot))
+                .build();
+    }
+
+    // callers hold the lock
+    private int findSlot(long id) {
+        int slot = Arrays.binarySearch(ids, 0, slotCount, id);
+        return slot >= 0 && birthEpochDays[slot] != DELETED ? slot : -1;
+    }
+
+    // callers hold the lock
+    private int findSlotByEmail(String email) {
+        if (email == null) {
+            return -1;
+        }
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        int mask = emailTable.length - 1;
+        for (int index = hash(email) & mask; emailTable[index] != 0; index = (index + 1) & mask) {
+            int slot = emailTable[index] - 1;
+            if (emails.equals(slot, bytes)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // callers hold the write lock
+    private void assignId(User user) {
+        while (findSlot(nextId) >= 0) {
+            nextId++;
+        }
+        user.setId(nextId++);
+    }
+
+    // callers hold the write lock; the user's id is greater than every stored id
+    private void appendSlot(User user) {
+        ensureCapacity(slotCount + 1);
+        int slot = slotCount++;
+        ids[slot] = user.getId();
+        writeSlot(slot, user);
+        liveCount++;
+    }
+
+    // callers hold the write lock
+    private void insertSlot(int slot, User user) {
+        ensureCapacity(slotCount + 1);
+        System.arraycopy(ids, slot, ids, slot + 1, slotCount - slot);
+        System.arraycopy(versions, slot, versions, slot + 1, slotCount - slot);
+        System.arraycopy(birthEpochDays, slot, birthEpochDays, slot + 1, slotCount - slot);
+        System.arraycopy(emailHashes, slot, emailHashes, slot + 1, slotCount - slot);
+        emails.insertGap(slot, slotCount);
+        firstNames.insertGap(slot, slotCount);
+        lastNames.insertGap(slot, slotCount);
+        addresses.insertGap(slot, slotCount);
+        phoneNumbers.insertGap(slot, slotCount);
+        slotCount++;
+        ids[slot] = user.getId();
+        // from the highest slot down, so an entry renumbered already never matches the slot looked up next
+        for (int shiftedSlot = slotCount - 1; shiftedSlot > slot; shiftedSlot--) {
+            renumberEmailEntry(shiftedSlot - 1, shiftedSlot);
+        }
+        writeSlot(slot, user);
+        liveCount++;
+    }
+
+    // callers hold the write lock
+    private void writeSlot(int slot, User user) {
+        versions[slot] = user.getVersion();
+        birthEpochDays[slot] = Math.toIntExact(user.getBirthDate().toEpochDay());
+        emails.set(slot, user.getEmail());
+        firstNames.set(slot, user.getFirstName());
+        lastNames.set(slot, user.getLastName());
+        addresses.set(slot, user.getAddress());
+        phoneNumbers.set(slot, user.getPhoneNumber());
+        emailHashes[slot] = hash(user.getEmail());
+        addEmail(slot);
+    }
+
+    // callers hold the write lock
+    private void replaceSlot(int slot, User existingUser, User user) {
+        boolean emailChanged = !existingUser.getEmail().equals(user.getEmail());
+        if (emailChanged) {
+            removeEmail(slot);
+        }
+        versions[slot] = user.getVersion();
+        birthEpochDays[slot] = Math.toIntExact(user.getBirthDate().toEpochDay());
+        if (emailChanged) {
+            emails.set(slot, user.getEmail());
+            emailHashes[slot] = hash(user.getEmail());
+            addEmail(slot);
+        }
+        firstNames.set(slot, user.getFirstName());
+        lastNames.set(slot, user.getLastName());
+        if (!Objects.equals(existingUser.getAddress(), user.getAddress())) {
+            addresses.set(slot, user.getAddress());
+        }
+        if (!Objects.equals(existingUser.getPhoneNumber(), user.getPhoneNumber())) {
+            phoneNumbers.set(slot, user.getPhoneNumber());
+        }
+    }
+
+    // callers hold the write lock
+    private void addEmail(int slot) {
+        if (2 * (emailTableEntries + 1) > emailTable.length) {
+            rebuildEmailTable(2 * emailTable.length);
+        }
+        insertEmailEntry(slot);
+        emailTableEntries++;
+    }
+
+    // callers hold the write lock; removes the entry with backward shifting, so probe chains stay intact
+    private void removeEmail(int slot) {
+        int mask = emailTable.length - 1;
+        int index = emailHashes[slot] & mask;
+        while (emailTable[index] != slot + 1) {
+            if (emailTable[index] == 0) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        int next = index;
+        while (true) {
+            next = (next + 1) & mask;
+            if (emailTable[next] == 0) {
+                break;
+            }
+            int home = emailHashes[emailTable[next] - 1] & mask;
+            boolean movable = next > index ? home <= index || home > next : home <= index && home > next;
+            if (movable) {
+                emailTable[index] = emailTable[next];
+                index = next;
+            }
+        }
+        emailTable[index] = 0;
+        emailTableEntries--;
+    }
+
+    // callers hold the write lock
+    private void insertEmailEntry(int slot) {
+        int mask = emailTable.length - 1;
+        int index = emailHashes[slot] & mask;
+        while (emailTable[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        emailTable[index] = slot + 1;
+    }
+
+    // callers hold the write lock
+    private void rebuildEmailTable(int capacity) {
+        int[] previousTable = emailTable;
+        emailTable = new int[capacity];
+        for (int entry : previousTable) {
+            if (entry != 0) {
+                insertEmailEntry(entry - 1);
+            }
+        }
+    }
+
+    // callers hold the write lock; the entry stays where it is, as its position only depends on the email hash
+    private void renumberEmailEntry(int previousSlot, int slot) {
+        int mask = emailTable.length - 1;
+        for (int index = emailHashes[slot] & mask; emailTable[index] != 0; index = (index + 1) & mask) {
+            if (emailTable[index] == previousSlot + 1) {
+                emailTable[index] = slot + 1;
+                return;
+            }
+        }
+    }
+
+    // callers hold the write lock
+    private void ensureCapacity(int capacity) {
+        if (ids.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+        birthEpochDays = Arrays.copyOf(birthEpochDays, newCapacity);
+        emailHashes = Arrays.copyOf(emailHashes, newCapacity);
+        emails.ensureCapacity(newCapacity);
+        firstNames.ensureCapacity(newCapacity);
+        lastNames.ensureCapacity(newCapacity);
+        addresses.ensureCapacity(newCapacity);
+        phoneNumbers.ensureCapacity(newCapacity);
+    }
+
+    // callers hold the write lock
+    private void resetColumns(int capacity) {
+        ids = new long[capacity];
+        versions = new long[capacity];
+        birthEpochDays = new int[capacity];
+        emailHashes = new int[capacity];
+        emails = new OffHeapStringColumn(capacity);
+        firstNames = new DictionaryStringColumn(capacity);
+        lastNames = new DictionaryStringColumn(capacity);
+        addresses = new OffHeapStringColumn(capacity);
+        phoneNumbers = new OffHeapStringColumn(capacity);
+        emailTable = new int[Integer.highestOneBit(Math.max(capacity, INITIAL_CAPACITY)) * 4];
+        emailTableEntries = 0;
+        slotCount = 0;
+        liveCount = 0;
+    }
+
+    /**
+     * Copies the live slots into fresh columns once deleted slots or replaced strings make up most of the store.
+     */
+    // callers hold the write lock
+    private void compactIfNeeded() {
+        int deletedSlots = slotCount - liveCount;
+        boolean manyDeletedSlots = deletedSlots > INITIAL_CAPACITY && deletedSlots > slotCount / 2;
+        if (!manyDeletedSlots && !emails.isMostlyGarbage() && !addresses.isMostlyGarbage()
+                && !phoneNumbers.isMostlyGarbage()) {
+            return;
+        }
+        long[] previousIds = ids;
+        long[] previousVersions = versions;
+        int[] previousBirthEpochDays = birthEpochDays;
+        int[] previousEmailHashes = emailHashes;
+        OffHeapStringColumn previousEmails = emails;
+        DictionaryStringColumn previousFirstNames = firstNames;
+        DictionaryStringColumn previousLastNames = lastNames;
+        OffHeapStringColumn previousAddresses = addresses;
+        OffHeapStringColumn previousPhoneNumbers = phoneNumbers;
+        boolean[] indexed = new boolean[slotCount];
+        for (int entry : emailTable) {
+            if (entry != 0) {
+                indexed[entry - 1] = true;
+            }
+        }
+        int previousSlotCount = slotCount;
+
+        resetColumns(Math.max(INITIAL_CAPACITY, liveCount));
+        for (int previousSlot = 0; previousSlot < previousSlotCount; previousSlot++) {
+            if (previousBirthEpochDays[previousSlot] == DELETED) {
+                continue;
+            }
+            int slot = slotCount++;
+            ids[slot] = previousIds[previousSlot];
+            versions[slot] = previousVersions[previousSlot];
+            birthEpochDays[slot] = previousBirthEpochDays[previousSlot];
+            emailHashes[slot] = previousEmailHashes[previousSlot];
+            previousEmails.copyTo(previousSlot, emails, slot);
+            previousFirstNames.copyTo(previousSlot, firstNames, slot);
+            previousLastNames.copyTo(previousSlot, lastNames, slot);
+            previousAddresses.copyTo(previousSlot, addresses, slot);
+            previousPhoneNumbers.copyTo(previousSlot, phoneNumbers, slot);
+            if (indexed[previousSlot]) {
+                insertEmailEntry(slot);
+                emailTableEntries++;
+            }
+            liveCount++;
+        }
+    }
+
+    private void afterWrite() {
+        // within a batch, the batch notifies the listeners once it is done
+        if (lock.isWriteLockedByCurrentThread()) {
+            return;
+        }
+        for (UserStoreListener listener : listeners) {
+            listener.afterWrite();
+        }
+    }
+
+    private static int hash(String email) {
+        int hash = email.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+}
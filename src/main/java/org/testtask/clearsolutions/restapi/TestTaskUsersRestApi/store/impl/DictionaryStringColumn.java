@@ -0,0 +1,55 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * String column for low-cardinality values such as names: every distinct value is kept once and slots hold
+ * an int code. Codes are never reused, so the dictionary only shrinks when the owning store rebuilds the column.
+ * Not thread-safe.
+ */
+final class DictionaryStringColumn {
+
+    private static final int NULL_CODE = -1;
+
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+    private int[] codes;
+
+    DictionaryStringColumn(int capacity) {
+        codes = new int[capacity];
+    }
+
+    void ensureCapacity(int capacity) {
+        if (codes.length < capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+
+    String get(int slot) {
+        int code = codes[slot];
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    void set(int slot, String value) {
+        codes[slot] = value == null ? NULL_CODE : codesByValue.computeIfAbsent(value, newValue -> {
+            values.add(newValue);
+            return values.size() - 1;
+        });
+    }
+
+    /**
+     * Moves slots {@code [slot, slotCount)} one position up, leaving {@code slot} empty.
+     */
+    void insertGap(int slot, int slotCount) {
+        System.arraycopy(codes, slot, codes, slot + 1, slotCount - slot);
+        codes[slot] = NULL_CODE;
+    }
+
+    void copyTo(int slot, DictionaryStringColumn target, int targetSlot) {
+        target.set(targetSlot, get(slot));
+    }
+}
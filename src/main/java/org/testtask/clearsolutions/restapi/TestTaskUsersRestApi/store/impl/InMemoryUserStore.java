@@ -0,0 +1,381 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps users in a primary id index, a unique email index and sorted id and birth date indexes.
+ * Users are stored as immutable snapshots that are replaced as a whole, and every read returns a fresh
+ * {@code User}, so readers never lock and never see a half-updated user, whatever callers do with the
+ * returned objects. Writes are serialized by a single lock so that all indexes, the version check and the
+ * listeners' view of the order of changes always agree.
+ */
+public class InMemoryUserStore implements UserStore {
+
+    private final Map<Long, StoredUser> usersById = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIdsByEmail = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> idIndex = new ConcurrentSkipListSet<>();
+    private final NavigableSet<BirthDateKey> birthDateIndex = new ConcurrentSkipListSet<>();
+    private final List<UserStoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // guarded by writeLock
+    private long nextId = 1;
+
+    // written under writeLock
+    private volatile long modificationCount;
+
+    @Override
+    public User insert(User user) {
+        writeLock.lock();
+        try {
+            if (userIdsByEmail.containsKey(user.getEmail())) {
+                throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
+            }
+            assignId(user);
+            user.setVersion(1);
+            addUser(StoredUser.of(user));
+            modificationCount++;
+            listeners.forEach(listener -> listener.onInsert(user));
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return user;
+    }
+
+    @Override
+    public List<User> insertAll(List<User> users) {
+        writeLock.lock();
+        try {
+            List<BatchItemError> errors = new ArrayList<>();
+            Set<String> batchEmails = new HashSet<>(users.size() * 2);
+            for (int i = 0; i < users.size(); i++) {
+                String email = users.get(i).getEmail();
+                if (userIdsByEmail.containsKey(email) || !batchEmails.add(email)) {
+                    errors.add(new BatchItemError(i, List.of("User with email " + email + " already exists")));
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new BatchValidationException(errors);
+            }
+            for (User user : users) {
+                assignId(user);
+                user.setVersion(1);
+                addUser(StoredUser.of(user));
+                listeners.forEach(listener -> listener.onInsert(user));
+            }
+            modificationCount++;
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return users;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        StoredUser storedUser = usersById.get(id);
+        return storedUser == null ? Optional.empty() : Optional.of(storedUser.toUser());
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Long id = userIdsByEmail.get(email);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public Optional<User> update(long id, User updatedUser, long expectedVersion) {
+        User user;
+        writeLock.lock();
+        try {
+            StoredUser existingUser = usersById.get(id);
+            if (existingUser == null) {
+                return Optional.empty();
+            }
+            if (expectedVersion != ANY_VERSION && existingUser.version() != expectedVersion) {
+                throw new UserVersionMismatchException("User with id " + id + " has version " + existingUser.version()
+                        + ", expected " + expectedVersion);
+            }
+            Long emailOwnerId = userIdsByEmail.get(updatedUser.getEmail());
+            if (emailOwnerId != null && emailOwnerId != id) {
+                throw new IllegalArgumentException("User with email " + updatedUser.getEmail() + " already exists");
+            }
+
+            user = User.builder()
+                    .id(id)
+                    .version(existingUser.version() + 1)
+                    .email(updatedUser.getEmail())
+                    .firstName(updatedUser.getFirstName())
+                    .lastName(updatedUser.getLastName())
+                    .birthDate(updatedUser.getBirthDate())
+                    .address(updatedUser.getAddress())
+                    .phoneNumber(updatedUser.getPhoneNumber())
+                    .build();
+            replaceUser(existingUser, StoredUser.of(user));
+            modificationCount++;
+            User previousUser = existingUser.toUser();
+            listeners.forEach(listener -> listener.onUpdate(previousUser, user));
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return Optional.of(user);
+    }
+
+    @Override
+    public Optional<User> delete(long id) {
+        User removedUser;
+        writeLock.lock();
+        try {
+            StoredUser storedUser = usersById.get(id);
+            if (storedUser == null) {
+                return Optional.empty();
+            }
+            removeUser(storedUser);
+            removedUser = storedUser.toUser();
+            modificationCount++;
+            listeners.forEach(listener -> listener.onDelete(removedUser));
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+        return Optional.of(removedUser);
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>(usersById.size());
+        for (StoredUser storedUser : usersById.values()) {
+            users.add(storedUser.toUser());
+        }
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Long> ids = idIndex.tailSet(afterId, false).iterator();
+        while (page.size() < limit && ids.hasNext()) {
+            StoredUser storedUser = usersById.get(ids.next());
+            if (storedUser != null) {
+                page.add(storedUser.toUser());
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        // users are replaced rather than mutated, so each element is a consistent snapshot of one user
+        return idIndex.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .map(StoredUser::toUser);
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+        return findByBirthDateRange(from, to, from.toEpochDay(), Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to, long afterEpochDay, long afterId, int limit) {
+        BirthDateKey fromKey = new BirthDateKey(from.toEpochDay(), Long.MAX_VALUE);
+        BirthDateKey afterKey = new BirthDateKey(afterEpochDay, afterId);
+        BirthDateKey lowerKey = afterKey.compareTo(fromKey) > 0 ? afterKey : fromKey;
+        BirthDateKey upperKey = new BirthDateKey(to.toEpochDay(), Long.MIN_VALUE);
+        List<User> foundUsers = new ArrayList<>();
+        if (lowerKey.compareTo(upperKey) >= 0) {
+            return foundUsers;
+        }
+        Iterator<BirthDateKey> keys = birthDateIndex.subSet(lowerKey, false, upperKey, false).iterator();
+        while (foundUsers.size() < limit && keys.hasNext()) {
+            BirthDateKey key = keys.next();
+            StoredUser storedUser = usersById.get(key.id());
+            // the index may briefly lag behind a concurrent update, so the user itself is re-checked
+            if (storedUser != null && storedUser.birthDate().toEpochDay() == key.epochDay()) {
+                foundUsers.add(storedUser.toUser());
+            }
+        }
+        return foundUsers;
+    }
+
+    @Override
+    public int size() {
+        return usersById.size();
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    // the sizes of the skip list indexes are not reported, counting their entries takes linear time
+    @Override
+    public Map<String, Long> getIndexSizes() {
+        return Map.of("id", (long) usersById.size(), "email", (long) userIdsByEmail.size());
+    }
+
+    @Override
+    public void load(Collection<User> users) {
+        writeLock.lock();
+        try {
+            usersById.clear();
+            userIdsByEmail.clear();
+            idIndex.clear();
+            birthDateIndex.clear();
+            nextId = 1;
+            for (User user : users) {
+                addUser(StoredUser.of(user));
+                nextId = Math.max(nextId, user.getId() + 1);
+            }
+            modificationCount++;
+            listeners.forEach(listener -> listener.onLoad(users));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void restore(User user) {
+        writeLock.lock();
+        try {
+            Long emailOwnerId = userIdsByEmail.get(user.getEmail());
+            if (emailOwnerId != null && emailOwnerId != user.getId()) {
+                userIdsByEmail.remove(user.getEmail());
+            }
+            StoredUser existingUser = usersById.get(user.getId());
+            if (existingUser == null) {
+                addUser(StoredUser.of(user));
+                listeners.forEach(listener -> listener.onInsert(user));
+            } else {
+                replaceUser(existingUser, StoredUser.of(user));
+                User previousUser = existingUser.toUser();
+                listeners.forEach(listener -> listener.onUpdate(previousUser, user));
+            }
+            nextId = Math.max(nextId, user.getId() + 1);
+            modificationCount++;
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void writeBatch(Runnable writes) {
+        writeLock.lock();
+        try {
+            writes.run();
+        } finally {
+            writeLock.unlock();
+        }
+        afterWrite();
+    }
+
+    @Override
+    public void addListener(UserStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    // callers hold writeLock
+    private void assignId(User user) {
+        while (usersById.containsKey(nextId)) {
+            nextId++;
+        }
+        user.setId(nextId++);
+    }
+
+    // callers hold writeLock
+    private void addUser(StoredUser user) {
+        usersById.put(user.id(), user);
+        userIdsByEmail.put(user.email(), user.id());
+        idIndex.add(user.id());
+        birthDateIndex.add(BirthDateKey.of(user));
+    }
+
+    // callers hold writeLock
+    private void replaceUser(StoredUser existingUser, StoredUser user) {
+        usersById.put(user.id(), user);
+        if (!existingUser.email().equals(user.email())) {
+            userIdsByEmail.remove(existingUser.email(), existingUser.id());
+            userIdsByEmail.put(user.email(), user.id());
+        }
+        if (!existingUser.birthDate().equals(user.birthDate())) {
+            birthDateIndex.add(BirthDateKey.of(user));
+            birthDateIndex.remove(BirthDateKey.of(existingUser));
+        }
+    }
+
+    // callers hold writeLock
+    private void removeUser(StoredUser user) {
+        usersById.remove(user.id());
+        userIdsByEmail.remove(user.email(), user.id());
+        idIndex.remove(user.id());
+        birthDateIndex.remove(BirthDateKey.of(user));
+    }
+
+    private void afterWrite() {
+        // within a batch, the batch notifies the listeners once it is done
+        if (writeLock.isHeldByCurrentThread()) {
+            return;
+        }
+        for (UserStoreListener listener : listeners) {
+            listener.afterWrite();
+        }
+    }
+
+    /**
+     * Immutable copy of a user as it was stored; callers only ever get {@code User} objects of their own.
+     */
+    private record StoredUser(long id, long version, String email, String firstName, String lastName,
+                              LocalDate birthDate, String address, String phoneNumber) {
+
+        static StoredUser of(User user) {
+            return new StoredUser(user.getId(), user.getVersion(), user.getEmail(), user.getFirstName(),
+                    user.getLastName(), user.getBirthDate(), user.getAddress(), user.getPhoneNumber());
+        }
+
+        User toUser() {
+            return User.builder()
+                    .id(id)
+                    .version(version)
+                    .email(email)
+                    .firstName(firstName)
+                    .lastName(lastName)
+                    .birthDate(birthDate)
+                    .address(address)
+                    .phoneNumber(phoneNumber)
+                    .build();
+        }
+    }
+
+    private record BirthDateKey(long epochDay, long id) implements Comparable<BirthDateKey> {
+
+        static BirthDateKey of(StoredUser user) {
+            return new BirthDateKey(user.birthDate().toEpochDay(), user.id());
+        }
+
+        @Override
+        public int compareTo(BirthDateKey other) {
+            int result = Long.compare(epochDay, other.epochDay);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * String column that keeps UTF-8 bytes in direct buffers outside the heap. Each slot holds a reference of
+ * {@code chunk index << 32 | offset} to a {@code [int length][bytes]} entry. Replaced values are not reclaimed
+ * until the owning store copies the live values into a new column. Not thread-safe.
+ */
+final class OffHeapStringColumn {
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final long NULL_REFERENCE = -1;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long[] references;
+    private long usedBytes;
+    private long garbageBytes;
+
+    OffHeapStringColumn(int capacity) {
+        references = new long[capacity];
+        Arrays.fill(references, NULL_REFERENCE);
+    }
+
+    void ensureCapacity(int capacity) {
+        if (references.length < capacity) {
+            int previousCapacity = references.length;
+            references = Arrays.copyOf(references, capacity);
+            Arrays.fill(references, previousCapacity, capacity, NULL_REFERENCE);
+        }
+    }
+
+    String get(int slot) {
+        long reference = references[slot];
+        if (reference == NULL_REFERENCE) {
+            return null;
+        }
+        ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+        int offset = (int) reference;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    boolean equals(int slot, byte[] value) {
+        long reference = references[slot];
+        if (reference == NULL_REFERENCE) {
+            return false;
+        }
+        ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+        int offset = (int) reference;
+        int length = chunk.getInt(offset);
+        return length == value.length && chunk.slice(offset + Integer.BYTES, length).equals(ByteBuffer.wrap(value));
+    }
+
+    void set(int slot, String value) {
+        clear(slot);
+        references[slot] = value == null ? NULL_REFERENCE : append(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Releases the value of the slot; its bytes count as garbage until the column is rebuilt.
+     */
+    void clear(int slot) {
+        long reference = references[slot];
+        if (reference != NULL_REFERENCE) {
+            garbageBytes += Integer.BYTES + chunks.get((int) (reference >>> 32)).getInt((int) reference);
+            references[slot] = NULL_REFERENCE;
+        }
+    }
+
+    /**
+     * Moves slots {@code [slot, slotCount)} one position up, leaving {@code slot} empty.
+     */
+    void insertGap(int slot, int slotCount) {
+        System.arraycopy(references, slot, references, slot + 1, slotCount - slot);
+        references[slot] = NULL_REFERENCE;
+    }
+
+    void copyTo(int slot, OffHeapStringColumn target, int targetSlot) {
+        long reference = references[slot];
+        if (reference == NULL_REFERENCE) {
+            target.references[targetSlot] = NULL_REFERENCE;
+            return;
+        }
+        ByteBuffer chunk = chunks.get((int) (reference >>> 32));
+        int offset = (int) reference;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + Integer.BYTES, bytes);
+        target.references[targetSlot] = target.append(bytes);
+    }
+
+    boolean isMostlyGarbage() {
+        return garbageBytes > CHUNK_SIZE && garbageBytes > usedBytes / 2;
+    }
+
+    long getOffHeapBytes() {
+        return chunks.stream().mapToLong(ByteBuffer::capacity).sum();
+    }
+
+    private long append(byte[] bytes) {
+        int entrySize = Integer.BYTES + bytes.length;
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < entrySize) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, entrySize));
+            chunks.add(chunk);
+        }
+        long reference = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        chunk.putInt(bytes.length).put(bytes);
+        usedBytes += entrySize;
+        return reference;
+    }
+}
@@ -0,0 +1,390 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStoreListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Partitions users by id over several stores, each with its own write lock and indexes, so writes of users in
+ * different shards do not wait for each other. Ids come from one counter and pick the shard, so consecutive inserts
+ * go to different shards. Emails stay unique across shards through a shared email to id map, a
+ * {@link ConcurrentHashMap} and so locked per bin rather than as a whole: an insert claims its email there before
+ * its shard stores the user, an update claims the new email under the write lock of its shard, and the old email
+ * is released by the shard's listener once the change has reached the listeners of this store. A write in another
+ * shard that takes over the email therefore reaches them after the change that gave it up.
+ * <p>
+ * Reads by id and email touch one shard. Reads across shards query all shards in parallel and merge their sorted
+ * results, and {@link #writeBatch(Runnable)} and {@link #load(Collection)} hold the locks of all shards. Listeners
+ * see the changes of each user in order, but changes of users in different shards may reach them concurrently.
+ */
+public class ShardedUserStore implements UserStore {
+
+    private static final Comparator<User> BY_ID = Comparator.comparingLong(User::getId);
+    private static final Comparator<User> BY_BIRTH_DATE = Comparator.comparing(User::getBirthDate)
+            .thenComparingLong(User::getId);
+
+    private final UserStore[] shards;
+    private final Map<String, Long> userIdsByEmail = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final List<UserStoreListener> listeners = new CopyOnWriteArrayList<>();
+    // set while the current thread runs a write spanning several shards, which notifies afterWrite once at the end
+    private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> false);
+
+    public ShardedUserStore(int shardCount, Supplier<UserStore> shardFactory) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive, got " + shardCount);
+        }
+        shards = new UserStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = shardFactory.get();
+            shards[i].addListener(new ShardListener());
+        }
+    }
+
+    public List<UserStore> getShards() {
+        return List.of(shards);
+    }
+
+    @Override
+    public User insert(User user) {
+        long id = nextId.getAndIncrement();
+        if (userIdsByEmail.putIfAbsent(user.getEmail(), id) != null) {
+            throw new IllegalArgumentException("User with email " + user.getEmail() + " already exists");
+        }
+        user.setId(id);
+        user.setVersion(1);
+        shard(id).restore(user);
+        return user;
+    }
+
+    @Override
+    public List<User> insertAll(List<User> users) {
+        long firstId = nextId.getAndAdd(users.size());
+        List<BatchItemError> errors = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            String email = users.get(i).getEmail();
+            // a later user of the batch with the same email finds the claim of the earlier one
+            if (userIdsByEmail.putIfAbsent(email, firstId + i) != null) {
+                errors.add(new BatchItemError(i, List.of("User with email " + email + " already exists")));
+            }
+        }
+        if (!errors.isEmpty()) {
+            for (int i = 0; i < users.size(); i++) {
+                userIdsByEmail.remove(users.get(i).getEmail(), firstId + i);
+            }
+            throw new BatchValidationException(errors);
+        }
+
+        List<List<User>> usersByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            usersByShard.add(new ArrayList<>(users.size() / shards.length + 1));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            user.setId(firstId + i);
+            user.setVersion(1);
+            usersByShard.get(shardIndex(user.getId())).add(user);
+        }
+        runBatch(() -> {
+            for (int i = 0; i < shards.length; i++) {
+                UserStore shard = shards[i];
+                List<User> shardUsers = usersByShard.get(i);
+                if (!shardUsers.isEmpty()) {
+                    shard.writeBatch(() -> shardUsers.forEach(shard::restore));
+                }
+            }
+        });
+        return users;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        return shard(id).findById(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Long id = userIdsByEmail.get(email);
+        // an email is claimed just before its user is stored and released just after the user changed it
+        return id == null ? Optional.empty() : findById(id).filter(user -> email.equals(user.getEmail()));
+    }
+
+    @Override
+    public Optional<User> update(long id, User updatedUser, long expectedVersion) {
+        UserStore shard = shard(id);
+        AtomicReference<Optional<User>> result = new AtomicReference<>(Optional.empty());
+        shard.writeBatch(() -> {
+            Optional<User> existingUser = shard.findById(id);
+            if (existingUser.isEmpty()) {
+                return;
+            }
+            if (expectedVersion != ANY_VERSION && existingUser.get().getVersion() != expectedVersion) {
+                throw new UserVersionMismatchException("User with id " + id + " has version "
+                        + existingUser.get().getVersion() + ", expected " + expectedVersion);
+            }
+            // claims of this user only change under the lock of its shard, so an email it owns is its current one
+            String email = updatedUser.getEmail();
+            Long emailOwnerId = userIdsByEmail.putIfAbsent(email, id);
+            if (emailOwnerId != null && emailOwnerId != id) {
+                throw new IllegalArgumentException("User with email " + email + " already exists");
+            }
+            try {
+                result.set(shard.update(id, updatedUser, expectedVersion));
+            } catch (RuntimeException exception) {
+                if (emailOwnerId == null) {
+                    userIdsByEmail.remove(email, id);
+                }
+                throw exception;
+            }
+        });
+        return result.get();
+    }
+
+    @Override
+    public Optional<User> delete(long id) {
+        return shard(id).delete(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        List<User> users = new ArrayList<>(size());
+        fanOut(UserStore::findAll).forEach(users::addAll);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return merge(fanOut(shard -> shard.findPage(afterId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        List<Stream<User>> streams = new ArrayList<>(shards.length);
+        List<Iterator<User>> iterators = new ArrayList<>(shards.length);
+        for (UserStore shard : shards) {
+            Stream<User> stream = shard.streamAll();
+            streams.add(stream);
+            iterators.add(stream.iterator());
+        }
+        Iterator<User> users = new MergingIterator(iterators, BY_ID);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users,
+                        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to) {
+        return findByBirthDateRange(from, to, from.toEpochDay(), Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> findByBirthDateRange(LocalDate from, LocalDate to, long afterEpochDay, long afterId, int limit) {
+        return merge(fanOut(shard -> shard.findByBirthDateRange(from, to, afterEpochDay, afterId, limit)),
+                BY_BIRTH_DATE, limit);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (UserStore shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getModificationCount() {
+        long modificationCount = 0;
+        for (UserStore shard : shards) {
+            modificationCount += shard.getModificationCount();
+        }
+        return modificationCount;
+    }
+
+    @Override
+    public Map<String, Long> getIndexSizes() {
+        return Map.of("id", (long) size(), "email", (long) userIdsByEmail.size());
+    }
+
+    @Override
+    public void load(Collection<User> users) {
+        List<List<User>> usersByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            usersByShard.add(new ArrayList<>(users.size() / shards.length + 1));
+        }
+        long maxId = 0;
+        for (User user : users) {
+            usersByShard.get(shardIndex(user.getId())).add(user);
+            maxId = Math.max(maxId, user.getId());
+        }
+        long lastId = maxId;
+        runBatch(() -> lockAll(0, () -> {
+            userIdsByEmail.clear();
+            for (int i = 0; i < shards.length; i++) {
+                shards[i].load(usersByShard.get(i));
+            }
+            for (User user : users) {
+                userIdsByEmail.put(user.getEmail(), user.getId());
+            }
+            nextId.set(lastId + 1);
+            listeners.forEach(listener -> listener.onLoad(users));
+        }));
+    }
+
+    @Override
+    public void restore(User user) {
+        UserStore shard = shard(user.getId());
+        shard.writeBatch(() -> {
+            // like the shards, drop the claim of a stale owner of the email
+            userIdsByEmail.put(user.getEmail(), user.getId());
+            shard.restore(user);
+        });
+        nextId.accumulateAndGet(user.getId() + 1, Math::max);
+    }
+
+    @Override
+    public void writeBatch(Runnable writes) {
+        runBatch(() -> lockAll(0, writes));
+    }
+
+    @Override
+    public void addListener(UserStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    private UserStore shard(long id) {
+        return shards[shardIndex(id)];
+    }
+
+    private int shardIndex(long id) {
+        return (int) Math.floorMod(id, (long) shards.length);
+    }
+
+    // takes the write locks of the shards in index order, as no other write holds more than one at a time
+    private void lockAll(int shardIndex, Runnable writes) {
+        if (shardIndex == shards.length) {
+            writes.run();
+        } else {
+            shards[shardIndex].writeBatch(() -> lockAll(shardIndex + 1, writes));
+        }
+    }
+
+    private void runBatch(Runnable writes) {
+        if (inBatch.get()) {
+            writes.run();
+            return;
+        }
+        inBatch.set(true);
+        try {
+            writes.run();
+        } finally {
+            inBatch.set(false);
+        }
+        listeners.forEach(UserStoreListener::afterWrite);
+    }
+
+    private List<List<User>> fanOut(Function<UserStore, List<User>> query) {
+        return Arrays.stream(shards).parallel().map(query).toList();
+    }
+
+    private static List<User> merge(List<List<User>> sortedLists, Comparator<User> comparator, int limit) {
+        List<User> users = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<User> merged = new MergingIterator(sortedLists.stream().map(List::iterator).toList(), comparator);
+        while (users.size() < limit && merged.hasNext()) {
+            users.add(merged.next());
+        }
+        return users;
+    }
+
+    /**
+     * Forwards the changes of one shard to the listeners of this store, then releases emails the shard's users gave up.
+     */
+    private class ShardListener implements UserStoreListener {
+
+        @Override
+        public void onInsert(User user) {
+            listeners.forEach(listener -> listener.onInsert(user));
+        }
+
+        @Override
+        public void onUpdate(User previousUser, User user) {
+            listeners.forEach(listener -> listener.onUpdate(previousUser, user));
+            if (!previousUser.getEmail().equals(user.getEmail())) {
+                userIdsByEmail.remove(previousUser.getEmail(), previousUser.getId());
+            }
+        }
+
+        @Override
+        public void onDelete(User user) {
+            listeners.forEach(listener -> listener.onDelete(user));
+            userIdsByEmail.remove(user.getEmail(), user.getId());
+        }
+
+        @Override
+        public void onLoad(Collection<User> users) {
+            // the store notifies its listeners once all shards are loaded
+        }
+
+        @Override
+        public void afterWrite() {
+            if (!inBatch.get()) {
+                listeners.forEach(UserStoreListener::afterWrite);
+            }
+        }
+    }
+
+    /**
+     * Merges iterators that are each sorted by the comparator into one sorted iterator.
+     */
+    private static class MergingIterator implements Iterator<User> {
+
+        private final PriorityQueue<Head> heads;
+
+        MergingIterator(List<Iterator<User>> iterators, Comparator<User> comparator) {
+            heads = new PriorityQueue<>(Math.max(iterators.size(), 1),
+                    (first, second) -> comparator.compare(first.user, second.user));
+            for (Iterator<User> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public User next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+            return head.user;
+        }
+
+        private record Head(User user, Iterator<User> rest) {
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi;
+
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.time.LocalDate;
+
+/**
+ * Valid users to create in tests.
+ */
+public final class UserFixtures {
+
+    private UserFixtures() {
+    }
+
+    public static User newUser(String email) {
+        return newUser(email, LocalDate.of(2000, 1, 1));
+    }
+
+    public static User newUser(String email, LocalDate birthDate) {
+        return User.builder()
+                .email(email)
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(birthDate)
+                .build();
+    }
+}
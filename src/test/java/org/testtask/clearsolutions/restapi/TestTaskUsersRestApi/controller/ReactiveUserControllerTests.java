@@ -0,0 +1,157 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config.HalNdjsonConfiguration;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.ReactiveUserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReactiveUserController.class)
+@Import(HalNdjsonConfiguration.class)
+class ReactiveUserControllerTests {
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReactiveUserService reactiveUserService;
+
+    private final String apiUrl = "/api/reactive/users";
+
+    private final List<User> users = List.of(
+            User.builder().id(1L).version(2).email("foomail1@mail.com").firstName("John").lastName("Doe")
+                    .birthDate(LocalDate.of(2001, 1, 5)).build(),
+            User.builder().id(2L).version(1).email("foomail2@mail.com").firstName("Maria").lastName("Smith")
+                    .birthDate(LocalDate.of(2002, 2, 12)).build());
+
+    @Test
+    @DisplayName("Test getUser() (Success)")
+    public void testGetUser() throws Exception {
+        when(reactiveUserService.findUserById(1L)).thenReturn(Mono.just(users.get(0)));
+
+        MvcResult result = mockMvc.perform(get(apiUrl + "/{id}", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(users.get(0), MediaTypes.HAL_JSON)))
+                .andExpect(jsonPath("$.user.email").value("foomail1@mail.com"))
+                .andExpect(jsonPath("$._links.self.href").value("http://localhost/api/users/1"));
+    }
+
+    @Test
+    @DisplayName("Test getUser() (Not found)")
+    public void testGetUser_NotFound() throws Exception {
+        when(reactiveUserService.findUserById(anyLong())).thenReturn(Mono.empty());
+
+        MvcResult result = mockMvc.perform(get(apiUrl + "/{id}", 10000L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Test mergeUser() (Stale If-Match)")
+    public void testMergeUser_StaleIfMatch() throws Exception {
+        when(reactiveUserService.findUserById(1L)).thenReturn(Mono.just(users.get(0)));
+
+        MvcResult result = mockMvc.perform(patch(apiUrl + "/{id}", 1L)
+                        .contentType(UserController.MERGE_PATCH_VALUE)
+                        .header(HttpHeaders.IF_MATCH, UserETags.of(User.builder().version(1).build(), MediaTypes.HAL_JSON))
+                        .content("{\"address\": \"Caiman St. 3\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPreconditionFailed());
+        verify(reactiveUserService, never()).patchUserById(anyLong(), any(), eq(UserStore.ANY_VERSION));
+    }
+
+    @Test
+    @DisplayName("Test getUsersByBirthDateRange() (Streams HAL users as NDJSON)")
+    public void testGetUsersByBirthDateRange() throws Exception {
+        LocalDate from = LocalDate.of(2000, 1, 1);
+        LocalDate to = LocalDate.of(2003, 1, 1);
+        when(reactiveUserService.getUsersByBirthDateRange(from, to)).thenReturn(Flux.fromIterable(users));
+
+        MvcResult result = mockMvc.perform(get(apiUrl + "/search")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .accept(UserController.NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.parseMediaType(UserController.NDJSON_VALUE)))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertTrue(lines[i].contains("\"_links\":{\"self\":{\"href\":\"http://localhost/api/users/" + (i + 1) + "\"}}"), lines[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test getUsersByBirthDateRange() (Invalid range)")
+    public void testGetUsersByBirthDateRange_InvalidRange() throws Exception {
+        when(reactiveUserService.getUsersByBirthDateRange(any(), any()))
+                .thenThrow(new IllegalArgumentException("Birth date range start is after range end"));
+
+        mockMvc.perform(get(apiUrl + "/search")
+                        .accept(UserController.NDJSON_VALUE)
+                        .param("from", "2003-01-01")
+                        .param("to", "2000-01-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.message").value("Birth date range start is after range end"));
+
+        mockMvc.perform(get(apiUrl + "/search")
+                        .accept(UserController.NDJSON_VALUE)
+                        .param("from", "not a date")
+                        .param("to", "2000-01-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                .andExpect(jsonPath("$.status").value(400));
+    }
+}
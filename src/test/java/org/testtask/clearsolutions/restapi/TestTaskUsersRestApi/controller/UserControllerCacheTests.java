@@ -0,0 +1,122 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config.BinaryFormatsConfiguration;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config.UserResponseCacheConfiguration;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserImportService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * {@link UserController} with the response cache of users read by id enabled.
+ */
+@WebMvcTest(controllers = UserController.class, properties = {"user.cache.enabled=true", "user.cache.gzip=true"})
+@Import({BinaryFormatsConfiguration.class, UserResponseCacheConfiguration.class})
+class UserControllerCacheTests {
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private UserImportService userImportService;
+
+    @MockBean
+    private UserStore userStore;
+
+    private final String apiUrl = "/api/users";
+
+    private User user;
+
+    @BeforeEach
+    public void setup() {
+        user = User.builder()
+                .id(1L)
+                .version(1)
+                .email("foomail1@mail.com")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.of(2001, 1, 5))
+                .build();
+        when(userService.findUserById(1L)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Cached HAL)")
+    public void testGetUserById_ServesCachedHal() throws Exception {
+        for (String accept : new String[]{null, "*/*", "application/hal+json", "application/json;q=0.5, application/hal+json"}) {
+            mockMvc.perform(accept == null ? get(apiUrl + "/{id}", 1L) : get(apiUrl + "/{id}", 1L).header(HttpHeaders.ACCEPT, accept))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaTypes.HAL_JSON))
+                    .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(user, MediaTypes.HAL_JSON)))
+                    .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                    .andExpect(jsonPath("$.user.email").value("foomail1@mail.com"));
+        }
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Cached gzip HAL)")
+    public void testGetUserById_ServesCachedGzipWithItsOwnETag() throws Exception {
+        mockMvc.perform(get(apiUrl + "/{id}", 1L).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.ofGzip(user, MediaTypes.HAL_JSON)));
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Preferred type other than HAL)")
+    public void testGetUserById_NegotiatesPreferredType() throws Exception {
+        mockMvc.perform(get(apiUrl + "/{id}", 1L).header(HttpHeaders.ACCEPT, "application/hal+json;q=0.5, application/json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(user, MediaType.APPLICATION_JSON)))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                .andExpect(jsonPath("$.user.email").value("foomail1@mail.com"));
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Smile and CBOR)")
+    public void testGetUserById_NegotiatesBinaryFormats() throws Exception {
+        mockMvc.perform(get(apiUrl + "/{id}", 1L).header(HttpHeaders.ACCEPT, "application/cbor, */*;q=0.1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(user, MediaType.APPLICATION_CBOR)));
+        mockMvc.perform(get(apiUrl + "/{id}", 1L).header(HttpHeaders.ACCEPT, UserController.SMILE_VALUE + ", */*;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(UserController.SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+    }
+}
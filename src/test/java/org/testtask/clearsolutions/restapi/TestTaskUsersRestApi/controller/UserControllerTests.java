@@ -1,42 +1,86 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.config.BinaryFormatsConfiguration;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserDto;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserMapper;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserNotFoundException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserImportService;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
+@Import(BinaryFormatsConfiguration.class)
 class UserControllerTests {
 
+    @TestConfiguration
+    static class MetricsConfiguration {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
     private ObjectWriter objectWriter = objectMapper.writer().withDefaultPrettyPrinter();
@@ -44,6 +88,9 @@ class UserControllerTests {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserImportService userImportService;
+
     private final String apiUrl = "/api/users";
 
     private List<User> users = new ArrayList<>();
@@ -88,15 +135,32 @@ class UserControllerTests {
     @DisplayName("Test getAllUsers()")
     public void testGetAllUsers() throws Exception {
         // Mock service behavior
-        when(userService.getAllUsers()).thenReturn(users);
+        when(userService.getUsers(null, 100)).thenReturn(new UserPage(users, null));
 
         // Perform GET request to /api/users
         mockMvc.perform(get(apiUrl))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$._embedded.userResourceList.length()").value(users.size()))
+                .andExpect(jsonPath("$._links.next").doesNotExist())
+                .andDo(print());
+
+        verify(userService).getUsers(null, 100);
+    }
+
+    @Test
+    @DisplayName("Test getAllUsers() (Next page link)")
+    public void testGetAllUsers_NextPage() throws Exception {
+        // Mock service behavior
+        when(userService.getUsers("cursor1", 2)).thenReturn(new UserPage(users.subList(0, 2), "cursor2"));
+
+        // Perform GET request to /api/users with paging parameters
+        mockMvc.perform(get(apiUrl + "?limit={limit}&cursor={cursor}", 2, "cursor1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userResourceList.length()").value(2))
+                .andExpect(jsonPath("$._links.next.href").value("http://localhost" + apiUrl + "?limit=2&cursor=cursor2"))
                 .andDo(print());
 
-        verify(userService).getAllUsers();
+        verify(userService).getUsers("cursor1", 2);
     }
 
     @Test
@@ -124,10 +188,27 @@ class UserControllerTests {
         verify(userService).findUserById(userId);
     }
 
+    @Test
+    @DisplayName("Test getUserById() (CBOR)")
+    public void testGetUserById_Cbor() throws Exception {
+        when(userService.findUserById(1L)).thenReturn(Optional.of(users.get(0)));
+
+        byte[] body = mockMvc.perform(get(apiUrl + "/{id}", 1L).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode userResource = new CBORMapper().readTree(body);
+        assertEquals(users.get(0).getEmail(), userResource.at("/user/email").asText());
+        assertEquals(users.get(0).getBirthDate().toString(), userResource.at("/user/birthDate").asText());
+        assertEquals("http://localhost" + apiUrl + "/1", userResource.at("/_links/self/href").asText());
+    }
+
     @Test
     @DisplayName("Test getUserById() (Not found)")
     public void testGetUserById_NotFound() throws Exception {
         long nonExistingUserId = 10000L;
+        double notFoundCount = meterRegistry.counter("users.not.found").count();
 
         // Mock Service behavior to return null
         when(userService.findUserById(nonExistingUserId)).thenThrow(UserNotFoundException.class);
@@ -137,6 +218,59 @@ class UserControllerTests {
                 .andExpect(status().isNotFound());
 
         verify(userService).findUserById(nonExistingUserId);
+        assertEquals(notFoundCount + 1, meterRegistry.counter("users.not.found").count());
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Not modified)")
+    public void testGetUserById_NotModified() throws Exception {
+        long userId = 1L;
+        User expectedUser = users.get(0);
+        expectedUser.setVersion(3);
+
+        when(userService.findUserById(userId)).thenReturn(Optional.of(expectedUser));
+
+        String eTag = UserETags.of(expectedUser, MediaTypes.HAL_JSON);
+        mockMvc.perform(get(apiUrl + "/{id}", userId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        mockMvc.perform(get(apiUrl + "/{id}", userId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("Test getUserById() (Each representation has its own ETag)")
+    public void testGetUserById_ETagPerRepresentation() throws Exception {
+        long userId = 1L;
+        User expectedUser = users.get(0);
+        expectedUser.setVersion(3);
+
+        when(userService.findUserById(userId)).thenReturn(Optional.of(expectedUser));
+
+        String jsonETag = UserETags.of(expectedUser, MediaType.APPLICATION_JSON);
+        mockMvc.perform(get(apiUrl + "/{id}", userId).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, jsonETag));
+        mockMvc.perform(get(apiUrl + "/{id}", userId).header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(expectedUser, MediaTypes.HAL_JSON)));
+    }
+
+    @Test
+    @DisplayName("Test getAllUsers() (Not modified)")
+    public void testGetAllUsers_NotModified() throws Exception {
+        when(userService.getModificationCount()).thenReturn(7L);
+        when(userService.getUsers(null, 100)).thenReturn(new UserPage(users, null));
+
+        String eTag = mockMvc.perform(get(apiUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get(apiUrl).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(userService, times(1)).getUsers(null, 100);
     }
 
     @Test
@@ -185,15 +319,60 @@ class UserControllerTests {
     @ParameterizedTest
     @MethodSource("invalidUserJson")
     @DisplayName("Test createUser() (Negative scenarios)")
-    public void testCreateUser_NegativeScenarios(String invalidUserJson) throws Exception {
+    public void testCreateUser_NegativeScenarios(String invalidUserJson, String expectedMessage) throws Exception {
+        // Users are validated once, by the service
+        UserService validatingService = validatingUserService();
+        when(userService.createUser(any(User.class)))
+                .thenAnswer(invocation -> validatingService.createUser(invocation.getArgument(0)));
+
         // Perform POST request to /api/users
         mockMvc.perform(post(apiUrl)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(invalidUserJson))
                 .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 BAD_REQUEST"))
+                .andExpect(jsonPath("$.message").value(expectedMessage))
                 .andDo(print());
     }
 
+    @Test
+    @DisplayName("Test createUser() (Unreadable birth date)")
+    public void testCreateUser_UnreadableBirthDate() throws Exception {
+        mockMvc.perform(post(apiUrl)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "email":"foomail@mail.com",
+                                    "firstName":"John",
+                                    "lastName":"Doe",
+                                    "birthDate":"invalidDate"
+                                }
+                                """))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON));
+
+        verify(userService, never()).createUser(any(User.class));
+    }
+
+    @Test
+    @DisplayName("Test users.validation.failures counts invalid users only")
+    public void testValidationFailureCounter_CountsInvalidUsersOnly() throws Exception {
+        double validationFailureCount = meterRegistry.counter("users.validation.failures").count();
+        UserService validatingService = validatingUserService();
+        when(userService.createUser(any(User.class)))
+                .thenAnswer(invocation -> validatingService.createUser(invocation.getArgument(0)));
+        when(userService.getUsers("badCursor", 10)).thenThrow(new IllegalArgumentException("Invalid cursor badCursor"));
+
+        mockMvc.perform(post(apiUrl)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((String) invalidUserJson().findFirst().orElseThrow().get()[0]))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(apiUrl + "?limit={limit}&cursor={cursor}", 10, "badCursor"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(validationFailureCount + 1, meterRegistry.counter("users.validation.failures").count());
+    }
+
     @Test
     @DisplayName("Test updateUser() (PUT)")
     public void testUpdateUserPut() throws Exception {
@@ -241,17 +420,63 @@ class UserControllerTests {
     @ParameterizedTest
     @MethodSource("invalidUserJson")
     @DisplayName("Test updateUser() (PUT) (Negative scenarios)")
-    public void testUpdateUserPut_NegativeScenarios(String invalidUserJson) throws Exception {
-        long userId = 1L;
+    public void testUpdateUserPut_NegativeScenarios(String invalidUserJson, String expectedMessage) throws Exception {
+        // Users are validated once, by the service
+        UserService validatingService = validatingUserService();
+        long userId = validatingService.createUser(users.get(0).toBuilder().build()).getId();
+        when(userService.updateUserById(eq(userId), any(User.class)))
+                .thenAnswer(invocation -> validatingService.updateUserById(userId, invocation.getArgument(1)));
 
         // Perform PUT request to /api/users
         mockMvc.perform(put(apiUrl + "/{id}", userId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(invalidUserJson))
                 .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 BAD_REQUEST"))
+                .andExpect(jsonPath("$.message").value(expectedMessage))
                 .andDo(print());
     }
 
+    @Test
+    @DisplayName("Test updateUser() (PUT) (Stale If-Match)")
+    public void testUpdateUserPut_PreconditionFailed() throws Exception {
+        long userId = 1L;
+        User existingUser = users.get(0);
+        existingUser.setVersion(1);
+        String staleETag = UserETags.of(existingUser, MediaTypes.HAL_JSON);
+        existingUser.setVersion(2);
+
+        when(userService.findUserById(userId)).thenReturn(Optional.of(existingUser));
+
+        mockMvc.perform(put(apiUrl + "/{id}", userId)
+                        .header(HttpHeaders.IF_MATCH, staleETag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(UserMapper.INSTANCE.toUserDto(existingUser))))
+                .andExpect(status().isPreconditionFailed())
+                .andDo(print());
+
+        verify(userService, never()).updateUserById(anyLong(), any(User.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("Test updateUser() (PUT) (If-Match from before a restart)")
+    public void testUpdateUserPut_ETagOfPreviousInstance() throws Exception {
+        long userId = 1L;
+        User existingUser = users.get(0);
+        existingUser.setVersion(1);
+
+        when(userService.findUserById(userId)).thenReturn(Optional.of(existingUser));
+
+        // an id freed by a delete may be reused at version 1 after a restart, so a tag of an earlier run never matches
+        mockMvc.perform(put(apiUrl + "/{id}", userId)
+                        .header(HttpHeaders.IF_MATCH, "\"0-1-hal+json\", \"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(UserMapper.INSTANCE.toUserDto(existingUser))))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(userService, never()).updateUserById(anyLong(), any(User.class), anyLong());
+    }
+
     @Test
     @DisplayName("Test updateUser() (PATCH)")
     public void testUpdateUserPatch() throws Exception {
@@ -268,8 +493,7 @@ class UserControllerTests {
                 .build();
 
         // Mock Service behavior
-        when(userService.findUserById(userId)).thenReturn(Optional.of(existingUser));
-        when(userService.updateUserById(eq(userId), eq(patchedUser))).thenReturn(patchedUser);
+        when(userService.patchUserById(eq(userId), any(UserPatch.class), eq(UserStore.ANY_VERSION))).thenReturn(patchedUser);
 
         // Perform PATCH request to /api/users/{id}
         mockMvc.perform(patch(apiUrl + "/{id}", userId)
@@ -290,7 +514,36 @@ class UserControllerTests {
                 .andExpect(jsonPath("$._links.self.href").value("http://localhost" + apiUrl + "/" + userId))
                 .andDo(print());
 
-        verify(userService).updateUserById(eq(patchedUser.getId()), any(User.class));
+        verify(userService).patchUserById(eq(patchedUser.getId()), any(UserPatch.class), eq(UserStore.ANY_VERSION));
+    }
+
+    @Test
+    @DisplayName("Test mergeUser() (PATCH with JSON Merge Patch)")
+    public void testMergeUserPatch() throws Exception {
+        long userId = 1L;
+        User existingUser = users.get(0);
+        existingUser.setVersion(4);
+
+        when(userService.findUserById(userId)).thenReturn(Optional.of(existingUser));
+        when(userService.patchUserById(eq(userId), any(UserPatch.class), eq(4L))).thenAnswer(invocation -> {
+            User patchedUser = invocation.getArgument(1, UserPatch.class).applyTo(existingUser);
+            patchedUser.setVersion(5);
+            return patchedUser;
+        });
+
+        // a tag of any representation of the current version matches
+        mockMvc.perform(patch(apiUrl + "/{id}", userId)
+                        .header(HttpHeaders.IF_MATCH, UserETags.of(existingUser, MediaType.APPLICATION_JSON))
+                        .contentType(new MediaType("application", "merge-patch+json"))
+                        .content("""
+                                {"firstName": "Robert", "address": "Caiman St. 3", "phoneNumber": null}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, UserETags.of(User.builder().version(5).build(), MediaTypes.HAL_JSON)))
+                .andExpect(jsonPath("$.user.firstName").value("Robert"))
+                .andExpect(jsonPath("$.user.lastName").value(existingUser.getLastName()))
+                .andExpect(jsonPath("$.user.address").value("Caiman St. 3"))
+                .andDo(print());
     }
 
     @ParameterizedTest
@@ -301,7 +554,7 @@ class UserControllerTests {
         User existingUser = users.get(0);
 
         when(userService.findUserById(userId)).thenReturn(Optional.of(existingUser));
-        when(userService.updateUserById(eq(userId), any(User.class))).thenThrow(IllegalArgumentException.class);
+        when(userService.patchUserById(eq(userId), any(UserPatch.class), anyLong())).thenThrow(IllegalArgumentException.class);
 
         // Perform PATCH request to /api/users
         mockMvc.perform(patch(apiUrl + "/{id}", userId)
@@ -345,7 +598,7 @@ class UserControllerTests {
         LocalDate to = LocalDate.now();
 
         // Mock Service behavior
-        when(userService.getUsersByBirthDateRange(from, to)).thenReturn(users);
+        when(userService.getUsersByBirthDateRange(from, to, null, 100)).thenReturn(new UserPage(users, null));
 
         // Perform GET request to /api/users/search with parameters
         mockMvc.perform(get(apiUrl + "/search?from={from}&to={to}", from.toString(), to.toString()))
@@ -353,43 +606,217 @@ class UserControllerTests {
                 .andExpect(jsonPath("$._embedded.userResourceList.length()").value(users.size()))
                 .andDo(print());
 
-        verify(userService).getUsersByBirthDateRange(from, to);
+        verify(userService).getUsersByBirthDateRange(from, to, null, 100);
+    }
+
+    @Test
+    @DisplayName("Test getStats()")
+    public void testGetStats() throws Exception {
+        when(userService.getStats()).thenReturn(new UserStats(3,
+                List.of(new UserStats.BirthYear(2001, 3, Map.of(1, 2L, 5, 1L))),
+                List.of(new UserStats.AgeBand(0, 18, 0), new UserStats.AgeBand(18, null, 3))));
+
+        mockMvc.perform(get(apiUrl + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.birthYears[0].year").value(2001))
+                .andExpect(jsonPath("$.birthYears[0].months.1").value(2))
+                .andExpect(jsonPath("$.ageBands[1].fromAge").value(18))
+                .andExpect(jsonPath("$.ageBands[1].toAge").value(Matchers.nullValue()))
+                .andExpect(jsonPath("$.ageBands[1].count").value(3));
+    }
+
+    @Test
+    @DisplayName("Test searchUsers()")
+    public void testSearchUsers() throws Exception {
+        when(userService.searchUsers("ma", 10)).thenReturn(users.subList(1, 3));
+
+        mockMvc.perform(get(apiUrl + "/search?q={q}", "ma"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$._embedded.userResourceList.length()").value(2))
+                .andExpect(jsonPath("$._embedded.userResourceList[0].user.email").value(users.get(1).getEmail()))
+                .andExpect(jsonPath("$._links.self.href").value("http://localhost" + apiUrl + "/search?q=ma&limit=10"));
+
+        verify(userService, never()).getUsersByBirthDateRange(any(), any(), any(), anyInt());
     }
 
-    private static Stream<String> invalidUserJson() {
+    @Test
+    @DisplayName("Test getUsersByBirthDateRange() (Smile)")
+    public void testGetUsersByBirthDateRange_Smile() throws Exception {
+        LocalDate from = LocalDate.now().minusYears(30);
+        LocalDate to = LocalDate.now();
+        when(userService.getUsersByBirthDateRange(from, to, null, 100)).thenReturn(new UserPage(users, null));
+
+        byte[] body = mockMvc.perform(get(apiUrl + "/search?from={from}&to={to}", from.toString(), to.toString())
+                        .accept(UserController.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(UserController.SMILE_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode collectionModel = new SmileMapper().readTree(body);
+        assertEquals(users.size(), collectionModel.at("/_embedded/userResourceList").size());
+        assertEquals(users.get(2).getEmail(), collectionModel.at("/_embedded/userResourceList/2/user/email").asText());
+        assertTrue(collectionModel.at("/_links/self/href").asText().startsWith("http://localhost" + apiUrl + "/search"));
+    }
+
+    @Test
+    @DisplayName("Test createUsers()")
+    public void testCreateUsers() throws Exception {
+        when(userService.createUsers(anyList())).thenReturn(users);
+
+        // Perform POST request to /api/users/batch
+        mockMvc.perform(post(apiUrl + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(users.stream().map(UserMapper.INSTANCE::toUserDto).toList())))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$._embedded.userResourceList.length()").value(users.size()))
+                .andExpect(jsonPath("$._embedded.userResourceList[2]._links.self.href").value("http://localhost" + apiUrl + "/3"))
+                .andDo(print());
+
+        verify(userService).createUsers(anyList());
+    }
+
+    @Test
+    @DisplayName("Test createUsers() (Negative scenario)")
+    public void testCreateUsers_NegativeScenario() throws Exception {
+        when(userService.createUsers(anyList())).thenThrow(new BatchValidationException(List.of(
+                new BatchItemError(1, List.of("User with email foomail1@mail.com already exists")))));
+
+        // Perform POST request to /api/users/batch
+        mockMvc.perform(post(apiUrl + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(users.stream().map(UserMapper.INSTANCE::toUserDto).toList())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[0].messages[0]").value("User with email foomail1@mail.com already exists"))
+                .andDo(print());
+    }
+
+    @Test
+    @DisplayName("Test exportUsers()")
+    public void testExportUsers() throws Exception {
+        // Mock Service behavior
+        when(userService.streamUsers()).thenReturn(users.stream());
+
+        // Perform GET request to /api/users/export
+        MvcResult result = mockMvc.perform(get(apiUrl + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(users.size(), lines.length);
+        for (int i = 0; i < users.size(); i++) {
+            JsonNode exportedUser = objectMapper.readTree(lines[i]);
+            assertEquals(users.get(i).getId(), exportedUser.get("id").asLong());
+            assertEquals(users.get(i).getEmail(), exportedUser.get("email").asText());
+            assertEquals(users.get(i).getBirthDate().toString(), exportedUser.get("birthDate").asText());
+        }
+
+        verify(userService).streamUsers();
+    }
+
+    @Test
+    @DisplayName("Test importUsers()")
+    public void testImportUsers() throws Exception {
+        String ndjson = """
+                {"email":"foomail4@mail.com","firstName":"Jonathan","lastName":"Brown","birthDate":"2000-08-11"}
+                {"email":"invalidEmail","firstName":"Jonathan","lastName":"Brown","birthDate":"2000-08-11"}
+                """;
+
+        // Mock Service behavior
+        when(userImportService.importUsers(any(), any())).thenAnswer(invocation -> {
+            Consumer<UserImportProgress> progressListener = invocation.getArgument(1);
+            progressListener.accept(new UserImportProgress(1, 1, 0, false, List.of()));
+            UserImportProgress result = new UserImportProgress(2, 1, 1, true,
+                    List.of(new BatchItemError(2, List.of("Email must be a valid email"))));
+            progressListener.accept(result);
+            return result;
+        });
+
+        // Perform POST request to /api/users/import
+        MvcResult result = mockMvc.perform(post(apiUrl + "/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        JsonNode lastProgress = objectMapper.readTree(lines[1]);
+        assertEquals(2, lastProgress.get("processed").asLong());
+        assertEquals(1, lastProgress.get("created").asLong());
+        assertEquals(1, lastProgress.get("rejected").asLong());
+        assertTrue(lastProgress.get("done").asBoolean());
+        assertEquals(2, lastProgress.get("errors").get(0).get("index").asInt());
+    }
+
+    private static UserService validatingUserService() {
+        UserServiceImpl validatingService = new UserServiceImpl(Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(validatingService, "minAge", 18);
+        return validatingService;
+    }
+
+    private static Stream<Arguments> invalidUserJson() {
         return Stream.of(
-                """
+                Arguments.of("""
                         {
                             "email":"invalidEmail",
                             "firstName":"John",
                             "lastName":"Doe",
                             "birthDate":"2000-01-01"
                         }
-                        """,
-                """
+                        """, "Provided User has errors: [Email must be a valid email]"),
+                Arguments.of("""
                         {
                             "email":"foomail@mail.com",
                             "firstName":"",
                             "lastName":"Doe",
                             "birthDate":"2000-01-01"
                         }
-                        """,
-                """
+                        """, "Provided User has errors: [First name is required and cannot be blank]"),
+                Arguments.of("""
                         {
                             "email":"foomail@mail.com",
                             "firstName":"John",
                             "lastName":"",
                             "birthDate":"2000-01-01"
                         }
-                        """,
-                """
+                        """, "Provided User has errors: [Last name is required and cannot be blank]"),
+                Arguments.of("""
                         {
                             "email":"foomail@mail.com",
                             "firstName":"John",
                             "lastName":"Doe",
-                            "birthDate":"invalidDate"
+                            "birthDate":"%s"
                         }
-                        """
+                        """.formatted(LocalDate.now().plusDays(1)), "Provided User has errors: [Birth date must be in the past]"),
+                Arguments.of("""
+                        {
+                            "email":"foomail@mail.com",
+                            "firstName":"John",
+                            "lastName":"Doe",
+                            "birthDate":"%s"
+                        }
+                        """.formatted(LocalDate.now().minusYears(10)), "User must be at least 18 years old"),
+                Arguments.of("""
+                        {
+                            "email":"invalidEmail",
+                            "firstName":"John",
+                            "lastName":"Doe",
+                            "birthDate":"%s"
+                        }
+                        """.formatted(LocalDate.now().minusYears(10)),
+                        "Provided User has errors: [Email must be a valid email, User must be at least 18 years old]")
         );
     }
 
@@ -400,6 +827,15 @@ class UserControllerTests {
                         """,
                 """
                              {"op":"replace","path":"/invalidPath","value":"foomail@mail.com"}
+                        """,
+                """
+                             [{"op":"replace","path":"/invalidPath","value":"foomail@mail.com"}]
+                        """,
+                """
+                             [{"op":"replace","path":"/birthDate","value":"not a date"}]
+                        """,
+                """
+                             [{"op":"replace","path":"/id","value":5}]
                         """
         );
     }
@@ -0,0 +1,142 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    public void setup() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testGet_ServesCachedBodyOfSameVersion() {
+        UserResponseCache cache = new UserResponseCache(objectMapper, 1 << 20, false);
+        User user = newUser(1, 1, "john@mail.com");
+
+        UserResponseCache.Entry miss = cache.get(user, UserLinkFactory.forCurrentRequest());
+        UserResponseCache.Entry hit = cache.get(newUser(1, 1, "john@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        assertSame(miss, hit);
+        assertTrue(new String(hit.json).contains("\"email\":\"john@mail.com\""));
+        assertTrue(new String(hit.json).contains("http://localhost/api/users/1"));
+        assertNull(hit.gzip);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(hit.json.length, cache.getBytes());
+    }
+
+    @Test
+    void testGet_NeverServesAnotherVersion() {
+        UserResponseCache cache = new UserResponseCache(objectMapper, 1 << 20, false);
+        cache.get(newUser(1, 1, "john@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        UserResponseCache.Entry entry = cache.get(newUser(1, 2, "johnny@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        assertTrue(new String(entry.json).contains("\"email\":\"johnny@mail.com\""));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(entry.json.length, cache.getBytes());
+    }
+
+    @Test
+    void testUpdatesAndDeletes_DropEntries() {
+        UserResponseCache cache = new UserResponseCache(objectMapper, 1 << 20, false);
+        User john = newUser(1, 1, "john@mail.com");
+        User maria = newUser(2, 1, "maria@mail.com");
+        cache.get(john, UserLinkFactory.forCurrentRequest());
+        cache.get(maria, UserLinkFactory.forCurrentRequest());
+
+        cache.onUpdate(john, newUser(1, 2, "johnny@mail.com"));
+        cache.onDelete(maria);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void testRepeatedUpdates_KeepEvictionQueueBounded() {
+        UserResponseCache cache = new UserResponseCache(objectMapper, 1 << 20, false);
+        User john = newUser(1, 1, "john@mail.com");
+        cache.get(newUser(2, 1, "maria@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        for (long version = 1; version <= 10_000; version++) {
+            User updatedJohn = newUser(1, version, "john@mail.com");
+            cache.get(updatedJohn, UserLinkFactory.forCurrentRequest());
+            cache.onUpdate(john, updatedJohn);
+            john = updatedJohn;
+            assertTrue(cache.getQueueLength() < 100, "queue length " + cache.getQueueLength());
+        }
+
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        cache.get(newUser(2, 1, "maria@mail.com"), UserLinkFactory.forCurrentRequest());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void testEviction_KeepsRecentlyReadEntries() {
+        long entrySize = new UserResponseCache(objectMapper, 1 << 20, false)
+                .get(newUser(1, 1, "user1@mail.com"), UserLinkFactory.forCurrentRequest()).json.length;
+        UserResponseCache cache = new UserResponseCache(objectMapper, 3 * entrySize, false);
+        for (long id = 1; id <= 3; id++) {
+            cache.get(newUser(id, 1, "user" + id + "@mail.com"), UserLinkFactory.forCurrentRequest());
+        }
+        cache.get(newUser(1, 1, "user1@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        cache.get(newUser(4, 1, "user4@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.size());
+        assertTrue(cache.getBytes() <= 3 * entrySize);
+        long hits = cache.getHitCount();
+        cache.get(newUser(1, 1, "user1@mail.com"), UserLinkFactory.forCurrentRequest());
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+    @Test
+    void testGzip_KeepsCompressedCopy() throws IOException {
+        UserResponseCache cache = new UserResponseCache(objectMapper, 1 << 20, true);
+
+        UserResponseCache.Entry entry = cache.get(newUser(1, 1, "john@mail.com"), UserLinkFactory.forCurrentRequest());
+
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(entry.gzip))) {
+            assertArrayEquals(entry.json, gzip.readAllBytes());
+        }
+        assertEquals(entry.json.length + entry.gzip.length, cache.getBytes());
+    }
+
+    private static User newUser(long id, long version, String email) {
+        return User.builder()
+                .id(id)
+                .version(version)
+                .email(email)
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class UserStorePersistenceTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testRecover_LoadsSnapshotAndReplaysLogTail() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(userStore);
+            for (int i = 0; i < 100; i++) {
+                userStore.insert(newUser("user" + i + "@mail.com"));
+            }
+            persistence.takeSnapshot();
+            userStore.update(1, newUser("renamed@mail.com"));
+            userStore.delete(2);
+            userStore.insert(newUser("late@mail.com"));
+        }
+        assertEquals(List.of("users-00000000000000000100.snapshot", "users-00000000000000000101.wal"), listFiles());
+
+        UserStore recoveredStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(recoveredStore);
+            assertEquals(sortedById(userStore.findAll()), sortedById(recoveredStore.findAll()));
+            assertEquals(102, recoveredStore.insert(newUser("next@mail.com")).getId());
+        }
+    }
+
+    @Test
+    void testTakeSnapshot_ReplacesOlderSnapshotsAndSkipsWhenUnchanged() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(userStore);
+            userStore.insert(newUser("first@mail.com"));
+            persistence.takeSnapshot();
+            userStore.insert(newUser("second@mail.com"));
+            persistence.takeSnapshot();
+            persistence.takeSnapshot();
+        }
+
+        assertEquals(List.of("users-00000000000000000002.snapshot", "users-00000000000000000003.wal"), listFiles());
+    }
+
+    @Test
+    void testRecover_SkipsCorruptSnapshotWhenLogIsComplete() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(userStore);
+            userStore.insert(newUser("first@mail.com"));
+            userStore.insert(newUser("second@mail.com"));
+        }
+        Path snapshot = new UserSnapshots(directory).write(2, userStore.streamAll());
+        truncateByOneByte(snapshot);
+
+        UserStore recoveredStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(recoveredStore);
+        }
+        assertEquals(sortedById(userStore.findAll()), sortedById(recoveredStore.findAll()));
+    }
+
+    @Test
+    void testRecover_FailsWhenLogCoveredByCorruptSnapshotIsDeleted() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserStorePersistence persistence = newPersistence()) {
+            persistence.recover(userStore);
+            userStore.insert(newUser("first@mail.com"));
+            persistence.takeSnapshot();
+            userStore.insert(newUser("second@mail.com"));
+        }
+        truncateByOneByte(directory.resolve("users-00000000000000000001.snapshot"));
+
+        try (UserStorePersistence persistence = newPersistence()) {
+            assertThrows(IOException.class, () -> persistence.recover(new InMemoryUserStore()));
+        }
+    }
+
+    private static void truncateByOneByte(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+    }
+
+    private UserStorePersistence newPersistence() throws IOException {
+        return new UserStorePersistence(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO, Duration.ZERO);
+    }
+
+    private List<String> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<User> sortedById(List<User> users) {
+        List<User> sortedUsers = new ArrayList<>(users);
+        sortedUsers.sort(Comparator.comparing(User::getId));
+        return sortedUsers;
+    }
+}
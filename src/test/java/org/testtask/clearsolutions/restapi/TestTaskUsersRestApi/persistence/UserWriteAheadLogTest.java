@@ -0,0 +1,158 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class UserWriteAheadLogTest {
+
+    @TempDir
+    private Path directory;
+
+    @ParameterizedTest
+    @EnumSource(UserWriteAheadLog.FsyncPolicy.class)
+    void testRecover_RestoresAllMutations(UserWriteAheadLog.FsyncPolicy fsyncPolicy) throws IOException {
+                UserStore userStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, fsyncPolicy, Duration.ofMillis(1))) {
+            recover(writeAheadLog, userStore);
+            User first = userStore.insert(newUser("first@mail.com"));
+            User second = userStore.insert(newUser("second@mail.com"));
+            userStore.insertAll(List.of(newUser("third@mail.com"), newUser("fourth@mail.com")));
+            userStore.update(first.getId(), newUser("renamed@mail.com"));
+            userStore.delete(second.getId());
+            assertEquals(6, writeAheadLog.getAppendedSequence());
+        }
+
+        UserStore recoveredStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, fsyncPolicy, Duration.ofMillis(1))) {
+            recover(writeAheadLog, recoveredStore);
+            assertEquals(6, writeAheadLog.getAppendedSequence());
+            assertEquals(sortedById(userStore.findAll()), sortedById(recoveredStore.findAll()));
+            assertEquals(5, recoveredStore.insert(newUser("fifth@mail.com")).getId());
+        }
+    }
+
+    @Test
+    void testRecover_TruncatesTornTail() throws IOException {
+                UserStore userStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, userStore);
+            userStore.insert(newUser("first@mail.com"));
+            userStore.insert(newUser("second@mail.com"));
+        }
+        Path segment = directory.resolve(String.format("users-%020d.wal", 1));
+        long fullSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(fullSize - 3);
+        }
+
+        UserStore recoveredStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, recoveredStore);
+            assertEquals(1, recoveredStore.size());
+            assertTrue(recoveredStore.findByEmail("first@mail.com").isPresent());
+            recoveredStore.insert(newUser("third@mail.com"));
+        }
+
+        UserStore reopenedStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, reopenedStore);
+            assertEquals(2, reopenedStore.size());
+            assertTrue(reopenedStore.findByEmail("third@mail.com").isPresent());
+        }
+    }
+
+    @Test
+    void testConcurrentWriters_AllRecordsDurable() throws Exception {
+                int threads = 8;
+        int usersPerThread = 200;
+        UserStore userStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, userStore);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < threads; thread++) {
+                    int threadIndex = thread;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < usersPerThread; i++) {
+                            userStore.insert(newUser("user" + threadIndex + "_" + i + "@mail.com"));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        UserStore recoveredStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, recoveredStore);
+            assertEquals(threads * usersPerThread, recoveredStore.size());
+            assertEquals(sortedById(userStore.findAll()), sortedById(recoveredStore.findAll()));
+        }
+    }
+
+    @Test
+    void testRotate_DeletesSegmentsCoveredBySequence() throws IOException {
+        UserStore userStore = new InMemoryUserStore();
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            recover(writeAheadLog, userStore);
+            userStore.insert(newUser("first@mail.com"));
+            writeAheadLog.rotate();
+            userStore.insert(newUser("second@mail.com"));
+            writeAheadLog.rotate();
+            writeAheadLog.rotate();
+            assertEquals(3, countSegments());
+
+            writeAheadLog.deleteSegmentsUpTo(1);
+            assertEquals(2, countSegments());
+        }
+
+        Map<Long, User> users = new HashMap<>();
+        users.put(1L, userStore.findById(1).orElseThrow());
+        try (UserWriteAheadLog writeAheadLog = new UserWriteAheadLog(directory, UserWriteAheadLog.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+            assertEquals(2, writeAheadLog.replay(users, 1));
+        }
+        assertEquals(sortedById(userStore.findAll()), sortedById(new ArrayList<>(users.values())));
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+
+    private static void recover(UserWriteAheadLog writeAheadLog, UserStore userStore) throws IOException {
+        Map<Long, User> users = new HashMap<>();
+        writeAheadLog.replay(users, 0);
+        userStore.load(users.values());
+        writeAheadLog.start(userStore);
+    }
+
+    private static List<User> sortedById(List<User> users) {
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+}
@@ -0,0 +1,99 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class UserReplicationLogTest {
+
+    private UserStore userStore;
+    private UserReplicationLog replicationLog;
+
+    @BeforeEach
+    public void setup() {
+        userStore = new InMemoryUserStore();
+        replicationLog = UserReplicationLog.of(userStore, 4);
+    }
+
+    @Test
+    void testRead_ReturnsRecordsInOrderAfterOffset() throws Exception {
+        User user = userStore.insert(newUser("john@mail.com"));
+        userStore.update(user.getId(), newUser("johnny@mail.com"));
+        userStore.delete(user.getId());
+        String logId = replicationLog.getPosition().logId();
+
+        List<UserReplicationRecord> records = replicationLog.read(logId, 1, 10, Duration.ZERO).orElseThrow();
+
+        assertEquals(2, records.size());
+        assertEquals(2, records.get(0).offset());
+        assertEquals("johnny@mail.com", records.get(0).user().getEmail());
+        assertEquals(2, records.get(0).user().getVersion());
+        assertTrue(records.get(1).isDelete());
+        assertEquals(user.getId(), records.get(1).userId());
+        assertEquals(List.of(records.get(0)), replicationLog.read(logId, 1, 1, Duration.ZERO).orElseThrow());
+        assertEquals(new UserReplicationLog.Position(logId, 3), replicationLog.getPosition());
+    }
+
+    @Test
+    void testRead_WaitsForTheNextRecord() throws Exception {
+        String logId = replicationLog.getPosition().logId();
+        assertTrue(replicationLog.read(logId, 0, 10, Duration.ofMillis(10)).orElseThrow().isEmpty());
+
+        CompletableFuture<List<UserReplicationRecord>> waitingRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replicationLog.read(logId, 0, 10, Duration.ofSeconds(10)).orElseThrow();
+            } catch (InterruptedException exception) {
+                throw new IllegalStateException(exception);
+            }
+        });
+        userStore.insert(newUser("john@mail.com"));
+
+        assertEquals(1, waitingRead.get(5, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    void testRead_IsGoneForDroppedRecordsAndOtherLogs() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            userStore.insert(newUser("user" + i + "@mail.com"));
+        }
+        String logId = replicationLog.getPosition().logId();
+
+        assertTrue(replicationLog.read(logId, 1, 10, Duration.ZERO).isEmpty());
+        assertEquals(4, replicationLog.read(logId, 2, 10, Duration.ZERO).orElseThrow().size());
+        assertTrue(replicationLog.read("other", 2, 10, Duration.ZERO).isEmpty());
+        assertTrue(replicationLog.read(logId, 7, 10, Duration.ZERO).isEmpty());
+
+        userStore.load(List.of());
+        assertTrue(replicationLog.read(logId, 6, 10, Duration.ZERO).isEmpty());
+        assertNotEquals(logId, replicationLog.getPosition().logId());
+    }
+
+    @Test
+    void testProtocol_RoundTripsRecordsAndSnapshots() throws Exception {
+        User user = userStore.insert(newUser("ünïcode@mail.com"));
+        userStore.delete(userStore.insert(newUser("deleted@mail.com")).getId());
+        List<UserReplicationRecord> records = replicationLog.read(replicationLog.getPosition().logId(), 0, 10, Duration.ZERO)
+                .orElseThrow();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        UserReplicationProtocol.writeRecords(new DataOutputStream(body), records);
+        assertEquals(records, UserReplicationProtocol.readRecords(new DataInputStream(new ByteArrayInputStream(body.toByteArray()))));
+        assertThrows(EOFException.class, () -> UserReplicationProtocol.readRecords(
+                new DataInputStream(new ByteArrayInputStream(body.toByteArray(), 0, body.size() - 1))));
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        replicationLog.writeSnapshot(new DataOutputStream(snapshot));
+        assertEquals(List.of(user), UserReplicationProtocol.readUsers(new DataInputStream(new ByteArrayInputStream(snapshot.toByteArray()))));
+    }
+}
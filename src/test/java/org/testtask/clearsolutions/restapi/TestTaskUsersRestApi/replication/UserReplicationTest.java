@@ -0,0 +1,128 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.replication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.TestTaskUsersRestApiApplication;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.UserService;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+/**
+ * Runs a leader and a follower on localhost.
+ */
+public class UserReplicationTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+    @TempDir
+    Path followerDirectory;
+
+    @AfterEach
+    public void stopInstances() {
+        instances.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void testFollower_ServesLeaderWritesAndRejectsItsOwn() throws Exception {
+        ConfigurableApplicationContext leader = start("--user.replication.role=leader");
+        ConfigurableApplicationContext follower = start("--user.replication.role=follower",
+                "--user.replication.leader-url=http://localhost:" + port(leader));
+        UserService leaderService = leader.getBean(UserService.class);
+
+        User user = leaderService.createUser(newUser("replicated@mail.com"));
+        awaitReplicated(leader, follower);
+
+        HttpResponse<String> response = get(follower, "/api/users/" + user.getId());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("replicated@mail.com"));
+        assertEquals("0", response.headers().firstValue(UserReplicationProtocol.LAG_HEADER).orElseThrow());
+        HttpResponse<String> write = httpClient.send(HttpRequest.newBuilder(uri(follower, "/api/users/" + user.getId()))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(409, write.statusCode());
+        assertTrue(get(follower, "/api/replication/status").body().contains("\"role\":\"follower\""));
+    }
+
+    @Test
+    void testRestartedFollower_CatchesUpFromItsOffset() throws Exception {
+        ConfigurableApplicationContext leader = start("--user.replication.role=leader");
+        String[] followerArgs = {"--user.replication.role=follower",
+                "--user.replication.leader-url=http://localhost:" + port(leader),
+                "--user.persistence.enabled=true", "--user.persistence.directory=" + followerDirectory};
+        UserService leaderService = leader.getBean(UserService.class);
+        ConfigurableApplicationContext follower = start(followerArgs);
+        User user = leaderService.createUser(newUser("first@mail.com"));
+        awaitReplicated(leader, follower);
+        assertEquals(1L, follower.getBean(UserReplicationFollower.class).getStatus().snapshots());
+        follower.close();
+
+        User updatedUser = newUser("updated@mail.com");
+        leaderService.updateUserById(user.getId(), updatedUser);
+        leaderService.deleteUserById(1);
+        leaderService.createUser(newUser("second@mail.com"));
+        ConfigurableApplicationContext restartedFollower = start(followerArgs);
+
+        awaitReplicated(leader, restartedFollower);
+        assertEquals(0L, restartedFollower.getBean(UserReplicationFollower.class).getStatus().snapshots());
+        assertEquals("updated@mail.com", restartedFollower.getBean(UserService.class).findUserById(user.getId()).orElseThrow().getEmail());
+    }
+
+    private ConfigurableApplicationContext start(String... args) {
+        List<String> arguments = new ArrayList<>(List.of("--server.port=0", "--user.replication.poll-wait=200ms",
+                "--user.replication.retry-interval=100ms"));
+        arguments.addAll(List.of(args));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TestTaskUsersRestApiApplication.class)
+                .run(arguments.toArray(String[]::new));
+        instances.add(context);
+        return context;
+    }
+
+    private void awaitReplicated(ConfigurableApplicationContext leader, ConfigurableApplicationContext follower)
+            throws InterruptedException {
+        await(() -> sortedUsers(follower).equals(sortedUsers(leader)));
+    }
+
+    private static List<User> sortedUsers(ConfigurableApplicationContext instance) {
+        return instance.getBean(UserService.class).getAllUsers().stream()
+                .sorted(Comparator.comparingLong(User::getId))
+                .toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Follower did not catch up in time");
+            Thread.sleep(20);
+        }
+    }
+
+    private HttpResponse<String> get(ConfigurableApplicationContext instance, String path) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(uri(instance, path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(ConfigurableApplicationContext instance, String path) {
+        return URI.create("http://localhost:" + port(instance) + path);
+    }
+
+    private static int port(ConfigurableApplicationContext instance) {
+        return ((ServletWebServerApplicationContext) instance).getWebServer().getPort();
+    }
+}
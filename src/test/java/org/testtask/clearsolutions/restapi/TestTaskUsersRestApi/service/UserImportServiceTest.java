@@ -0,0 +1,77 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserImportProgress;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserImportServiceImpl;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserImportServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private UserServiceImpl userService;
+
+    private UserImportServiceImpl userImportService;
+
+    @BeforeEach
+    public void setup() {
+        userService = new UserServiceImpl(Validation.buildDefaultValidatorFactory().getValidator());
+        userImportService = new UserImportServiceImpl(userService, objectMapper, 2);
+    }
+
+    @Test
+    void testImportUsers() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            ndjson.append("{\"email\":\"import").append(i).append("@mail.com\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"birthDate\":\"2000-01-01\"}\n");
+        }
+        List<UserImportProgress> progress = new ArrayList<>();
+
+        UserImportProgress result = userImportService.importUsers(toStream(ndjson.toString()), progress::add);
+
+        assertEquals(5, result.processed());
+        assertEquals(5, result.created());
+        assertEquals(0, result.rejected());
+        assertTrue(result.done());
+        assertEquals(3, progress.size());
+        assertEquals(List.of(2L, 4L, 5L), progress.stream().map(UserImportProgress::processed).toList());
+        assertEquals(5, userService.getAllUsers().size());
+    }
+
+    @Test
+    void testImportUsers_RejectsInvalidLines() throws Exception {
+        String ndjson = """
+                {"email":"import1@mail.com","firstName":"John","lastName":"Doe","birthDate":"2000-01-01"}
+                {"email":"invalidEmail","firstName":"John","lastName":"Doe","birthDate":"2000-01-01"}
+
+                {"email":"import1@mail.com","firstName":"John","lastName":"Doe","birthDate":"2000-01-01"}
+                not json
+                {"email":"import2@mail.com","firstName":"John","lastName":"Doe","birthDate":"2000-01-01"}
+                """;
+        List<BatchItemError> errors = new ArrayList<>();
+
+        UserImportProgress result = userImportService.importUsers(toStream(ndjson), progress -> errors.addAll(progress.errors()));
+
+        assertEquals(5, result.processed());
+        assertEquals(2, result.created());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of(2, 4, 5), errors.stream().map(BatchItemError::getIndex).toList());
+        assertTrue(userService.findUserByEmail("import2@mail.com").isPresent());
+    }
+
+    private static ByteArrayInputStream toStream(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}
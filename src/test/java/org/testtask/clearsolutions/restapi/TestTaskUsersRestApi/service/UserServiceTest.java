@@ -1,13 +1,23 @@
 package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.dto.UserPatch;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchItemError;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserNotFoundException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserPage;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
 import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl.UserServiceImpl;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.UserStore;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -18,6 +28,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTest {
 
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     private UserServiceImpl userService;
 
     private List<User> initialUsers;
@@ -66,6 +78,30 @@ public class UserServiceTest {
         assertEquals(3, allUsers.size());
     }
 
+    @Test
+    void testSearchUsers() {
+        assertEquals(List.of(2L, 3L), userService.searchUsers(" MA ", 10).stream().map(User::getId).toList());
+        assertEquals(List.of(3L), userService.searchUsers("bro", 10).stream().map(User::getId).toList());
+        userService.deleteUserById(3L);
+        assertEquals(List.of(2L), userService.searchUsers("ma", 10).stream().map(User::getId).toList());
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(" ", 10));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers("ma", 0));
+    }
+
+    @Test
+    void testGetStats() {
+        ReflectionTestUtils.setField(userService, "minAge", 18);
+
+        UserStats stats = userService.getStats();
+
+        assertEquals(3, stats.total());
+        assertEquals(List.of(2001, 2002, 2003), stats.birthYears().stream().map(UserStats.BirthYear::year).toList());
+        assertEquals(7, stats.ageBands().size());
+        assertEquals(new UserStats.AgeBand(0, 18, 0), stats.ageBands().get(0));
+        assertEquals(new UserStats.AgeBand(18, 28, 3), stats.ageBands().get(1));
+        assertNull(stats.ageBands().get(6).toAge());
+    }
+
     @Test
     void testFindUserById() {
         long userId = 1L;
@@ -100,6 +136,55 @@ public class UserServiceTest {
         assertThrows(IllegalArgumentException.class, () -> userService.createUser(user));
     }
 
+    @Test
+    void testCreateUser_ErrorMessages() {
+        User invalidUser = User.builder()
+                .email("invalidEmail")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.of(2000, 1, 1))
+                .build();
+        assertEquals("Provided User has errors: [Email must be a valid email]",
+                assertThrows(IllegalArgumentException.class, () -> userService.createUser(invalidUser)).getMessage());
+
+        ReflectionTestUtils.setField(userService, "minAge", 18);
+        User tooYoungUser = User.builder()
+                .email("young@mail.com")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.now().minusYears(18))
+                .build();
+        assertEquals("User must be at least 18 years old",
+                assertThrows(IllegalArgumentException.class, () -> userService.createUser(tooYoungUser)).getMessage());
+        tooYoungUser.setBirthDate(LocalDate.now().minusYears(18).minusDays(1));
+        assertDoesNotThrow(() -> userService.createUser(tooYoungUser));
+    }
+
+    @Test
+    void testCreateUser_ConstraintMessagesComeBeforeTheAgeRule() {
+        ReflectionTestUtils.setField(userService, "minAge", 18);
+        User unbornUser = User.builder()
+                .email("unborn@mail.com")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.now().plusDays(1))
+                .build();
+        assertEquals("Provided User has errors: [Birth date must be in the past]",
+                assertThrows(IllegalArgumentException.class, () -> userService.createUser(unbornUser)).getMessage());
+
+        User tooYoungUser = User.builder()
+                .email("invalidEmail")
+                .firstName("John")
+                .lastName("Doe")
+                .birthDate(LocalDate.now().minusYears(10))
+                .build();
+        assertEquals("Provided User has errors: [Email must be a valid email, User must be at least 18 years old]",
+                assertThrows(IllegalArgumentException.class, () -> userService.createUser(tooYoungUser)).getMessage());
+        assertEquals(List.of("Email must be a valid email", "User must be at least 18 years old"),
+                assertThrows(BatchValidationException.class, () -> userService.createUsers(List.of(tooYoungUser)))
+                        .getErrors().get(0).getMessages());
+    }
+
     @ParameterizedTest
     @MethodSource("invalidUsers")
     void testUpdateUser_NegativeScenarios(User user) {
@@ -111,6 +196,48 @@ public class UserServiceTest {
         assertThrows(UserNotFoundException.class, () -> userService.updateUserById(999, User.builder().build()));
     }
 
+    @Test
+    void testPatchUser() throws Exception {
+        UserPatch jsonPatch = UserPatch.fromJsonPatch(objectMapper.readTree("""
+                [
+                    {"op": "test", "path": "/firstName", "value": "Mark"},
+                    {"op": "replace", "path": "/firstName", "value": "Marcus"},
+                    {"op": "move", "from": "/phoneNumber", "path": "/address"}
+                ]
+                """));
+        User patchedUser = userService.patchUserById(3, jsonPatch, UserStore.ANY_VERSION);
+        assertEquals("Marcus", patchedUser.getFirstName());
+        assertEquals("3010394099", patchedUser.getAddress());
+        assertNull(patchedUser.getPhoneNumber());
+        assertEquals("foomail3@mail.com", patchedUser.getEmail());
+
+        UserPatch mergePatch = UserPatch.fromMergePatch(objectMapper.readTree("""
+                {"lastName": "Green", "address": null, "birthDate": "1990-05-17"}
+                """));
+        patchedUser = userService.patchUserById(3, mergePatch, patchedUser.getVersion());
+        assertEquals("Green", patchedUser.getLastName());
+        assertNull(patchedUser.getAddress());
+        assertEquals(LocalDate.of(1990, 5, 17), patchedUser.getBirthDate());
+        assertEquals(patchedUser, userService.findUserById(3).orElseThrow());
+    }
+
+    @Test
+    void testPatchUser_NegativeScenarios() throws Exception {
+        UserPatch invalidEmail = UserPatch.fromMergePatch(objectMapper.readTree("{\"email\": \"not an email\"}"));
+        UserPatch removedFirstName = UserPatch.fromJsonPatch(objectMapper.readTree("[{\"op\": \"remove\", \"path\": \"/firstName\"}]"));
+        UserPatch failedTest = UserPatch.fromJsonPatch(objectMapper.readTree("[{\"op\": \"test\", \"path\": \"/lastName\", \"value\": \"Roe\"}]"));
+        UserPatch takenEmail = UserPatch.fromMergePatch(objectMapper.readTree("{\"email\": \"foomail2@mail.com\"}"));
+
+        assertEquals("Provided User has errors: [Email must be a valid email]",
+                assertThrows(UserValidationException.class, () -> userService.patchUserById(1, invalidEmail, UserStore.ANY_VERSION)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> userService.patchUserById(1, removedFirstName, UserStore.ANY_VERSION));
+        assertThrows(IllegalArgumentException.class, () -> userService.patchUserById(1, failedTest, UserStore.ANY_VERSION));
+        assertThrows(IllegalArgumentException.class, () -> userService.patchUserById(1, takenEmail, UserStore.ANY_VERSION));
+        assertThrows(UserVersionMismatchException.class, () -> userService.patchUserById(1, failedTest, 7));
+        assertThrows(UserNotFoundException.class, () -> userService.patchUserById(999, invalidEmail, UserStore.ANY_VERSION));
+        assertEquals(initialUsers.get(0), userService.findUserById(1).orElseThrow());
+    }
+
     @Test
     void testDeleteUser() {
         assertDoesNotThrow(() -> userService.deleteUserById(1));
@@ -137,6 +264,33 @@ public class UserServiceTest {
         assertEquals(newUser.getBirthDate(), savedUser.getBirthDate());
     }
 
+    @Test
+    void testCreateUsers() {
+        List<User> newUsers = List.of(
+                User.builder().email("batch1@mail.com").firstName("New").lastName("User").birthDate(LocalDate.of(2000, 1, 1)).build(),
+                User.builder().email("batch2@mail.com").firstName("New").lastName("User").birthDate(LocalDate.of(2000, 1, 2)).build()
+        );
+
+        List<User> savedUsers = userService.createUsers(newUsers);
+        assertEquals(2, savedUsers.size());
+        assertNotEquals(savedUsers.get(0).getId(), savedUsers.get(1).getId());
+        assertEquals(5, userService.getAllUsers().size());
+    }
+
+    @Test
+    void testCreateUsers_NegativeScenario() {
+        List<User> newUsers = List.of(
+                User.builder().email("batch1@mail.com").firstName("New").lastName("User").birthDate(LocalDate.of(2000, 1, 1)).build(),
+                User.builder().email("foomail1@mail.com").firstName("New").lastName("User").birthDate(LocalDate.of(2000, 1, 1)).build(),
+                User.builder().email("batch1@mail.com").firstName("").lastName("User").birthDate(LocalDate.of(2000, 1, 1)).build()
+        );
+
+        BatchValidationException exception = assertThrows(BatchValidationException.class, () -> userService.createUsers(newUsers));
+        assertEquals(List.of(1, 2), exception.getErrors().stream().map(BatchItemError::getIndex).toList());
+        assertEquals(2, exception.getErrors().get(1).getMessages().size());
+        assertEquals(3, userService.getAllUsers().size());
+    }
+
     @Test
     public void testGetUsersByBirthDateRange() {
         assertEquals(0, userService.getUsersByBirthDateRange(LocalDate.of(1990, 1, 1), LocalDate.of(1991, 1, 1)).size());
@@ -150,6 +304,42 @@ public class UserServiceTest {
         assertThrows(IllegalArgumentException.class, () -> userService.getUsersByBirthDateRange(LocalDate.of(2000, 1, 1), LocalDate.of(1999, 1, 1)).size());
     }
 
+    @Test
+    public void testGetUsers_Pages() {
+        UserPage firstPage = userService.getUsers(null, 2);
+        assertEquals(List.of(1L, 2L), firstPage.users().stream().map(User::getId).toList());
+        assertTrue(firstPage.hasNext());
+
+        UserPage secondPage = userService.getUsers(firstPage.nextCursor(), 2);
+        assertEquals(List.of(3L), secondPage.users().stream().map(User::getId).toList());
+        assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    public void testStreamUsers() {
+        userService.deleteUserById(2);
+
+        assertEquals(List.of(1L, 3L), userService.streamUsers().map(User::getId).toList());
+    }
+
+    @Test
+    public void testGetUsersByBirthDateRange_Pages() {
+        UserPage firstPage = userService.getUsersByBirthDateRange(LocalDate.of(1990, 1, 1), LocalDate.of(2005, 1, 1), null, 2);
+        assertEquals(List.of(1L, 2L), firstPage.users().stream().map(User::getId).toList());
+
+        UserPage secondPage = userService.getUsersByBirthDateRange(LocalDate.of(1990, 1, 1), LocalDate.of(2005, 1, 1), firstPage.nextCursor(), 2);
+        assertEquals(List.of(3L), secondPage.users().stream().map(User::getId).toList());
+        assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    public void testGetUsers_NegativeScenarios() {
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsers(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsers("notACursor", 10));
+        String birthDateCursor = userService.getUsersByBirthDateRange(LocalDate.of(1990, 1, 1), LocalDate.of(2005, 1, 1), null, 1).nextCursor();
+        assertThrows(IllegalArgumentException.class, () -> userService.getUsers(birthDateCursor, 10));
+    }
+
     private static Stream<User> invalidUsers() {
         return Stream.of(
                 User.builder()
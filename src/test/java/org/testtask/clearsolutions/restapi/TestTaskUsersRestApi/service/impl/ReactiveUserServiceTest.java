@@ -0,0 +1,94 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReactiveUserServiceTest {
+
+    private static final int PAGE_SIZE = 2;
+
+    private UserServiceImpl userService;
+    private ReactiveUserServiceImpl reactiveUserService;
+    private List<User> users;
+
+    @BeforeEach
+    public void setup() {
+        userService = spy(new UserServiceImpl(Validation.buildDefaultValidatorFactory().getValidator()));
+        ReflectionTestUtils.setField(userService, "minAge", 18);
+        reactiveUserService = new ReactiveUserServiceImpl(userService, PAGE_SIZE, Schedulers.immediate());
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userService.createUser(User.builder()
+                    .email("user" + i + "@mail.com")
+                    .firstName("John")
+                    .lastName("Doe")
+                    .birthDate(LocalDate.of(1990 - i, 1, 1))
+                    .build()));
+        }
+    }
+
+    @Test
+    void testSearch_StreamsAllPagesInBirthDateOrder() {
+        List<User> foundUsers = reactiveUserService.getUsersByBirthDateRange(LocalDate.of(1980, 1, 1), LocalDate.of(2000, 1, 1))
+                .collectList()
+                .block();
+
+        List<User> usersByBirthDate = new ArrayList<>(users);
+        Collections.reverse(usersByBirthDate);
+        assertEquals(usersByBirthDate, foundUsers);
+    }
+
+    @Test
+    void testSearch_ReadsPagesOnDemand() {
+        List<User> firstUsers = reactiveUserService.getUsersByBirthDateRange(LocalDate.of(1980, 1, 1), LocalDate.of(2000, 1, 1))
+                .take(PAGE_SIZE)
+                .collectList()
+                .block();
+
+        assertEquals(PAGE_SIZE, firstUsers.size());
+        verify(userService, times(1)).getUsersByBirthDateRange(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testSearch_RejectsInvalidRangeWhenCalled() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reactiveUserService.getUsersByBirthDateRange(LocalDate.of(2000, 1, 1), LocalDate.of(1990, 1, 1)));
+    }
+
+    @Test
+    void testGetAllUsers_StreamsAllUsersInIdOrder() {
+        assertEquals(users, reactiveUserService.getAllUsers().collectList().block());
+    }
+
+    @Test
+    void testFindUserById_CompletesEmptyForUnknownUser() {
+        assertEquals(users.get(0), reactiveUserService.findUserById(users.get(0).getId()).block());
+        assertNull(reactiveUserService.findUserById(100).block());
+    }
+
+    @Test
+    void testCreateUser_RunsOnSubscription() {
+        User invalidUser = User.builder().email("invalid").build();
+        Mono<User> creation = reactiveUserService.createUser(invalidUser);
+
+        verify(userService, never()).createUser(eq(invalidUser));
+        assertThrows(IllegalArgumentException.class, creation::block);
+    }
+}
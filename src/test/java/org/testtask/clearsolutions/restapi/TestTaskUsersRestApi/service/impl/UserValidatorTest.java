@@ -0,0 +1,30 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.service.impl;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserValidatorTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2024-02-29", "2024-02-28", "2024-03-01", "2023-02-28", "2023-03-01", "2023-12-31"})
+    void testAgeCutoff_MatchesBirthdayRule(String today) {
+        LocalDate date = LocalDate.parse(today);
+        Clock clock = Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        UserValidator userValidator = new UserValidator(Validation.buildDefaultValidatorFactory().getValidator(), clock);
+
+        for (int minAge : new int[]{0, 1, 18, 21}) {
+            LocalDate cutoff = date.minusYears(minAge);
+            for (LocalDate birthDate = cutoff.minusDays(5); birthDate.isBefore(cutoff.plusDays(5)); birthDate = birthDate.plusDays(1)) {
+                assertEquals(birthDate.plusYears(minAge).isBefore(date), userValidator.isOldEnough(birthDate, minAge),
+                        "born " + birthDate + ", minimum age " + minAge);
+            }
+        }
+    }
+}
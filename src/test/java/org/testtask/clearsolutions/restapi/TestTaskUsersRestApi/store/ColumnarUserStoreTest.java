@@ -0,0 +1,111 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class ColumnarUserStoreTest extends InMemoryUserStoreTest {
+
+    @Override
+    protected UserStore newUserStore() {
+        return new ColumnarUserStore();
+    }
+
+    @Test
+    void testMaterializedUser_KeepsAllFields() {
+        User user = newUser("ünïcode@mail.com", LocalDate.of(1899, 12, 31));
+        user.setAddress("Kyiv, Khreshchatyk 1");
+        user.setPhoneNumber(null);
+        userStore.insert(user);
+
+        assertEquals(user, userStore.findById(user.getId()).orElseThrow());
+        assertEquals(user, userStore.findByEmail("ünïcode@mail.com").orElseThrow());
+        assertNotSame(user, userStore.findById(user.getId()).orElseThrow());
+    }
+
+    @Test
+    void testDeletesAndUpdates_CompactColumns() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            users.add(newUser("user" + i + "@mail.com", LocalDate.of(1950, 1, 1).plusDays(i)));
+        }
+        userStore.insertAll(users);
+        for (int i = 0; i < 4_000; i++) {
+            userStore.delete(users.get(i).getId());
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 4_000; i < 5_000; i++) {
+                User user = newUser("user" + i + "_" + round + "@mail.com", LocalDate.of(1950, 1, 1).plusDays(i));
+                user.setAddress("Address " + round + " of user " + i);
+                userStore.update(users.get(i).getId(), user);
+            }
+        }
+
+        assertEquals(1_000, userStore.size());
+        assertTrue(userStore.findByEmail("user0@mail.com").isEmpty());
+        assertTrue(userStore.findByEmail("user4500_18@mail.com").isEmpty());
+        User user = userStore.findByEmail("user4500_19@mail.com").orElseThrow();
+        assertEquals(users.get(4_500).getId(), user.getId());
+        assertEquals("Address 19 of user 4500", user.getAddress());
+        assertEquals(users.get(4_000).getId(), userStore.findPage(0, 1).get(0).getId());
+        assertEquals(1_000, userStore.streamAll().count());
+        assertEquals(users.subList(4_100, 4_110).stream().map(User::getId).collect(Collectors.toList()),
+                userStore.findByBirthDateRange(LocalDate.of(1950, 1, 1).plusDays(4_099), LocalDate.of(1951, 1, 1).plusDays(5_000),
+                                LocalDate.of(1950, 1, 1).plusDays(4_099).toEpochDay(), Long.MAX_VALUE, 10)
+                        .stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRestore_KeepsSlotsInIdOrder() {
+        userStore.restore(withId(newUser("ten@mail.com"), 10));
+        userStore.restore(withId(newUser("two@mail.com"), 2));
+        userStore.restore(withId(newUser("five@mail.com"), 5));
+        userStore.delete(5);
+        userStore.restore(withId(newUser("five-again@mail.com"), 5));
+        userStore.restore(withId(newUser("two@mail.com", LocalDate.of(1990, 1, 1)), 7));
+
+        assertEquals(List.of(2L, 5L, 7L, 10L), userStore.findAll().stream().map(User::getId).toList());
+        assertEquals(7, userStore.findByEmail("two@mail.com").orElseThrow().getId());
+        assertEquals("five-again@mail.com", userStore.findById(5).orElseThrow().getEmail());
+        assertEquals(List.of(5L, 7L), userStore.findPage(2, 2).stream().map(User::getId).toList());
+        assertEquals(11, userStore.insert(newUser("new@mail.com")).getId());
+    }
+
+    @Test
+    void testOutOfOrderRestores_KeepEmailIndex() {
+        // descending ids shift every slot above each restored one, across several growths of the email table
+        for (long id = 2_999; id >= 1; id -= 2) {
+            userStore.restore(withId(newUser("user" + id + "@mail.com"), id));
+        }
+        for (long id = 2; id <= 3_000; id += 2) {
+            userStore.restore(withId(newUser("user" + id + "@mail.com"), id));
+        }
+        userStore.delete(1_500);
+        userStore.restore(withId(newUser("user1501@mail.com", LocalDate.of(1990, 1, 1)), 1_499));
+
+        assertEquals(2_999, userStore.size());
+        for (long id = 1; id <= 3_000; id++) {
+            long expectedId = id == 1_501 ? 1_499 : id;
+            Optional<User> user = userStore.findByEmail("user" + id + "@mail.com");
+            if (id == 1_500 || id == 1_499) {
+                assertTrue(user.isEmpty(), "user" + id);
+            } else {
+                assertEquals(expectedId, user.orElseThrow().getId(), "user" + id);
+            }
+        }
+    }
+
+    private static User withId(User user, long id) {
+        user.setId(id);
+        return user;
+    }
+}
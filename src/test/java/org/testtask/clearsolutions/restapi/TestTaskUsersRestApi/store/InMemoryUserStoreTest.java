@@ -0,0 +1,235 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.UserVersionMismatchException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class InMemoryUserStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int USERS_PER_THREAD = 2_000;
+
+    protected UserStore userStore;
+
+    @BeforeEach
+    public void setup() {
+        userStore = newUserStore();
+    }
+
+    protected UserStore newUserStore() {
+        return new InMemoryUserStore();
+    }
+
+    @Test
+    void testConcurrentCreates_UniqueIds() throws Exception {
+        List<User> createdUsers = Collections.synchronizedList(new ArrayList<>());
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < USERS_PER_THREAD; i++) {
+                createdUsers.add(userStore.insert(newUser("user" + thread + "_" + i + "@mail.com")));
+            }
+        });
+
+        Set<Long> ids = new HashSet<>();
+        for (User user : createdUsers) {
+            assertTrue(ids.add(user.getId()), "Duplicate id " + user.getId());
+            assertEquals(user, userStore.findById(user.getId()).orElseThrow());
+            assertEquals(user, userStore.findByEmail(user.getEmail()).orElseThrow());
+        }
+        assertEquals(THREADS * USERS_PER_THREAD, ids.size());
+        assertEquals(THREADS * USERS_PER_THREAD, userStore.size());
+    }
+
+    @Test
+    void testConcurrentCreates_UniqueEmails() throws Exception {
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < USERS_PER_THREAD; i++) {
+                try {
+                    userStore.insert(newUser("user" + i + "@mail.com"));
+                } catch (IllegalArgumentException exception) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(USERS_PER_THREAD, userStore.size());
+        assertEquals((THREADS - 1) * USERS_PER_THREAD, rejected.get());
+        Set<String> emails = new HashSet<>();
+        for (User user : userStore.findAll()) {
+            assertTrue(emails.add(user.getEmail()), "Duplicate email " + user.getEmail());
+        }
+    }
+
+    @Test
+    void testConcurrentUpdates_EmailSwapKeepsIndexConsistent() throws Exception {
+        User first = userStore.insert(newUser("first@mail.com"));
+        User second = userStore.insert(newUser("second@mail.com"));
+
+        runConcurrently(thread -> {
+            long id = thread % 2 == 0 ? first.getId() : second.getId();
+            for (int i = 0; i < USERS_PER_THREAD; i++) {
+                try {
+                    userStore.update(id, newUser("shared" + (i % 4) + "@mail.com"));
+                } catch (IllegalArgumentException ignored) {
+                    // email is currently held by the other user
+                }
+            }
+        });
+
+        User firstAfter = userStore.findById(first.getId()).orElseThrow();
+        User secondAfter = userStore.findById(second.getId()).orElseThrow();
+        assertNotEquals(firstAfter.getEmail(), secondAfter.getEmail());
+        assertEquals(firstAfter, userStore.findByEmail(firstAfter.getEmail()).orElseThrow());
+        assertEquals(secondAfter, userStore.findByEmail(secondAfter.getEmail()).orElseThrow());
+    }
+
+    @Test
+    void testDelete_ReleasesEmail() {
+        User user = userStore.insert(newUser("user@mail.com"));
+
+        assertTrue(userStore.delete(user.getId()).isPresent());
+        assertTrue(userStore.findByEmail("user@mail.com").isEmpty());
+        assertTrue(userStore.delete(user.getId()).isEmpty());
+        assertNotEquals(user.getId(), userStore.insert(newUser("user@mail.com")).getId());
+    }
+
+    @Test
+    void testIndexSizes_FollowInsertsAndDeletes() {
+        User user = userStore.insert(newUser("first@mail.com"));
+        userStore.insert(newUser("second@mail.com"));
+        assertEquals(2L, userStore.getIndexSizes().get("email"));
+
+        userStore.delete(user.getId());
+        assertEquals(1L, userStore.getIndexSizes().get("email"));
+    }
+
+    @Test
+    void testBirthDateIndex_FollowsUpdatesAndDeletes() {
+        User first = userStore.insert(newUser("first@mail.com", LocalDate.of(2000, 1, 1)));
+        User second = userStore.insert(newUser("second@mail.com", LocalDate.of(2001, 1, 1)));
+        userStore.insert(newUser("third@mail.com", LocalDate.of(2002, 1, 1)));
+
+        assertEquals(List.of(first, second), userStore.findByBirthDateRange(LocalDate.of(1999, 12, 31), LocalDate.of(2002, 1, 1)));
+        assertTrue(userStore.findByBirthDateRange(LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 1)).isEmpty());
+        assertTrue(userStore.findByBirthDateRange(LocalDate.of(2000, 1, 1), LocalDate.of(2000, 1, 2)).isEmpty());
+
+        User movedFirst = userStore.update(first.getId(), newUser("first@mail.com", LocalDate.of(2003, 1, 1))).orElseThrow();
+        userStore.delete(second.getId());
+
+        assertTrue(userStore.findByBirthDateRange(LocalDate.of(1999, 1, 1), LocalDate.of(2001, 6, 1)).isEmpty());
+        assertEquals(List.of(movedFirst), userStore.findByBirthDateRange(LocalDate.of(2002, 6, 1), LocalDate.of(2004, 1, 1)));
+    }
+
+    @Test
+    void testVersions_IncrementOnUpdateAndGuardConditionalUpdates() {
+        User user = userStore.insert(newUser("versioned@mail.com"));
+        long modificationCount = userStore.getModificationCount();
+
+        assertEquals(1, user.getVersion());
+        assertEquals(2, userStore.update(user.getId(), newUser("versioned@mail.com"), 1).orElseThrow().getVersion());
+        assertEquals(3, userStore.update(user.getId(), newUser("versioned@mail.com")).orElseThrow().getVersion());
+        assertThrows(UserVersionMismatchException.class,
+                () -> userStore.update(user.getId(), newUser("stale@mail.com"), 2));
+
+        assertEquals(3, userStore.findById(user.getId()).orElseThrow().getVersion());
+        assertTrue(userStore.findByEmail("stale@mail.com").isEmpty());
+        assertEquals(modificationCount + 2, userStore.getModificationCount());
+        userStore.delete(user.getId());
+        assertEquals(modificationCount + 3, userStore.getModificationCount());
+    }
+
+    @Test
+    void testConcurrentConditionalUpdates_NoLostUpdatesOrTornReads() throws Exception {
+        int writers = THREADS / 2;
+        int incrementsPerWriter = 500;
+        long id = userStore.insert(counterUser(0)).getId();
+        AtomicInteger finishedWriters = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            if (thread < writers) {
+                for (int i = 0; i < incrementsPerWriter; i++) {
+                    while (true) {
+                        User user = userStore.findById(id).orElseThrow();
+                        try {
+                            userStore.update(id, counterUser(Integer.parseInt(user.getAddress()) + 1), user.getVersion());
+                            break;
+                        } catch (UserVersionMismatchException exception) {
+                            // another writer got there first, read again
+                        }
+                    }
+                }
+                finishedWriters.incrementAndGet();
+            } else {
+                while (finishedWriters.get() < writers) {
+                    User user = userStore.findById(id).orElseThrow();
+                    assertEquals("First" + user.getAddress(), user.getFirstName());
+                    assertEquals("Last" + user.getAddress(), user.getLastName());
+                    assertEquals(Long.parseLong(user.getAddress()) + 1, user.getVersion());
+                }
+            }
+        });
+
+        User user = userStore.findById(id).orElseThrow();
+        assertEquals(String.valueOf(writers * incrementsPerWriter), user.getAddress());
+        assertEquals(writers * incrementsPerWriter + 1, user.getVersion());
+    }
+
+    @Test
+    void testReturnedUsers_DoNotShareStateWithStore() {
+        User user = userStore.insert(newUser("owned@mail.com"));
+        user.setEmail("changed@mail.com");
+        userStore.findById(user.getId()).orElseThrow().setFirstName("Changed");
+
+        User storedUser = userStore.findById(user.getId()).orElseThrow();
+        assertEquals("owned@mail.com", storedUser.getEmail());
+        assertEquals("John", storedUser.getFirstName());
+        assertTrue(userStore.findByEmail("changed@mail.com").isEmpty());
+    }
+
+    private void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadIndex = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(threadIndex);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static User counterUser(int counter) {
+        User user = newUser("counter@mail.com");
+        user.setFirstName("First" + counter);
+        user.setLastName("Last" + counter);
+        user.setAddress(String.valueOf(counter));
+        return user;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
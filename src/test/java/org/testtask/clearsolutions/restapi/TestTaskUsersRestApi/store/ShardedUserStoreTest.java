@@ -0,0 +1,138 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.exception.BatchValidationException;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ShardedUserStore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class ShardedUserStoreTest extends InMemoryUserStoreTest {
+
+    @Override
+    protected UserStore newUserStore() {
+        return new ShardedUserStore(4, InMemoryUserStore::new);
+    }
+
+    @Test
+    void testCrossShardReads_MergeInOrder() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(newUser("user" + i + "@mail.com", LocalDate.of(1990, 1, 1).plusDays((i * 7) % 20)));
+        }
+        userStore.insertAll(users);
+        ((ShardedUserStore) userStore).getShards().forEach(shard -> assertFalse(shard.size() == 0));
+
+        assertEquals(users.subList(10, 20), userStore.findPage(10, 10));
+        try (Stream<User> stream = userStore.streamAll()) {
+            assertEquals(users, stream.toList());
+        }
+        List<User> byBirthDate = users.stream()
+                .sorted(Comparator.comparing(User::getBirthDate).thenComparing(User::getId))
+                .toList();
+        LocalDate from = LocalDate.of(1989, 12, 31);
+        LocalDate to = LocalDate.of(1991, 1, 1);
+        assertEquals(byBirthDate, userStore.findByBirthDateRange(from, to));
+        User last = byBirthDate.get(19);
+        assertEquals(byBirthDate.subList(20, 25), userStore.findByBirthDateRange(from, to,
+                last.getBirthDate().toEpochDay(), last.getId(), 5));
+        assertEquals(50, userStore.findAll().size());
+    }
+
+    @Test
+    void testRejectedBatch_ReleasesItsEmails() {
+        userStore.insert(newUser("taken@mail.com"));
+
+        assertThrows(BatchValidationException.class, () -> userStore.insertAll(List.of(
+                newUser("first@mail.com"), newUser("second@mail.com"), newUser("taken@mail.com"))));
+
+        assertTrue(userStore.findByEmail("first@mail.com").isEmpty());
+        assertEquals(2, userStore.insertAll(List.of(newUser("first@mail.com"), newUser("second@mail.com"))).size());
+        assertEquals(3L, userStore.getIndexSizes().get("email"));
+    }
+
+    @Test
+    void testEmailTakenOverInAnotherShard_ReachesListenersAfterItWasGivenUp() throws Exception {
+        User first = userStore.insert(newUser("swap@mail.com"));
+        User second = userStore.insert(newUser("second@mail.com"));
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch takenOver = new CountDownLatch(1);
+        userStore.addListener(new UserStoreListener() {
+            @Override
+            public void onInsert(User user) {
+            }
+
+            @Override
+            public void onDelete(User user) {
+            }
+
+            @Override
+            public void onUpdate(User previousUser, User user) {
+                if (previousUser.getId() == first.getId()) {
+                    // the email must not be claimable before this change is logged, so the other update waits in vain
+                    try {
+                        takenOver.await(200, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                log.add(user.getId() + " " + user.getEmail());
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> giveUp = executor.submit(() -> userStore.update(first.getId(), newUser("first@mail.com"), UserStore.ANY_VERSION));
+            Future<?> takeOver = executor.submit(() -> {
+                while (true) {
+                    try {
+                        userStore.update(second.getId(), newUser("swap@mail.com"), UserStore.ANY_VERSION);
+                        takenOver.countDown();
+                        return;
+                    } catch (IllegalArgumentException exception) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            giveUp.get(10, TimeUnit.SECONDS);
+            takeOver.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(first.getId() + " first@mail.com", second.getId() + " swap@mail.com"), log);
+        assertEquals(second.getId(), userStore.findByEmail("swap@mail.com").orElseThrow().getId());
+    }
+
+    @Test
+    void testLoad_NotifiesListenersOnceWithAllUsers() {
+        UserPrefixIndex index = UserPrefixIndex.of(userStore);
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            User user = newUser("user" + id + "@mail.com");
+            user.setId(id * 3);
+            user.setVersion(1);
+            users.add(user);
+        }
+
+        userStore.load(users);
+
+        assertEquals(8, index.findIdsByPrefix("user", 100).size());
+        assertEquals(users.get(4), userStore.findByEmail("user5@mail.com").orElseThrow());
+        assertEquals(25, userStore.insert(newUser("new@mail.com")).getId());
+    }
+}
@@ -0,0 +1,82 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.UserStats;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.UserFixtures.newUser;
+
+public class UserBirthDateStatisticsTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2015, 6, 15);
+    private static final int[] AGE_BAND_STARTS = {0, 18, 30};
+
+    private UserStore userStore;
+    private UserBirthDateStatistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        userStore = new InMemoryUserStore();
+        userStore.insert(newUser("first@mail.com", LocalDate.of(1990, 3, 1)));
+        statistics = UserBirthDateStatistics.of(userStore);
+    }
+
+    @Test
+    void testStats_CountBirthMonthsAndAgeBands() {
+        userStore.insert(newUser("second@mail.com", LocalDate.of(1990, 3, 20)));
+        userStore.insert(newUser("third@mail.com", LocalDate.of(1990, 11, 2)));
+        userStore.insert(newUser("fourth@mail.com", LocalDate.of(2010, 1, 1)));
+
+        UserStats stats = statistics.getStats(TODAY, AGE_BAND_STARTS);
+
+        assertEquals(4, stats.total());
+        assertEquals(List.of(
+                new UserStats.BirthYear(1990, 3, Map.of(3, 2L, 11, 1L)),
+                new UserStats.BirthYear(2010, 1, Map.of(1, 1L))), stats.birthYears());
+        assertEquals(List.of(
+                new UserStats.AgeBand(0, 18, 1),
+                new UserStats.AgeBand(18, 30, 3),
+                new UserStats.AgeBand(30, null, 0)), stats.ageBands());
+    }
+
+    @Test
+    void testAgeBands_SwitchTheDayAfterBirthdays() {
+        // as for the minimum age of a new user, a birthday must have passed before today
+        userStore.insert(newUser("turned-18-yesterday@mail.com", TODAY.minusYears(18).minusDays(1)));
+        userStore.insert(newUser("turns-18@mail.com", TODAY.minusYears(18)));
+        userStore.insert(newUser("turns-30@mail.com", TODAY.minusYears(30)));
+
+        assertEquals(List.of(
+                new UserStats.AgeBand(0, 18, 1),
+                new UserStats.AgeBand(18, 30, 3),
+                new UserStats.AgeBand(30, null, 0)), statistics.getStats(TODAY, AGE_BAND_STARTS).ageBands());
+    }
+
+    @Test
+    void testStats_FollowUpdatesDeletesAndLoads() {
+        User user = userStore.insert(newUser("second@mail.com", LocalDate.of(2010, 1, 1)));
+        userStore.update(user.getId(), newUser("second@mail.com", LocalDate.of(1950, 5, 5)));
+        userStore.delete(1);
+
+        UserStats stats = statistics.getStats(TODAY, AGE_BAND_STARTS);
+        assertEquals(1, stats.total());
+        assertEquals(List.of(new UserStats.BirthYear(1950, 1, Map.of(5, 1L))), stats.birthYears());
+        assertEquals(1, stats.ageBands().get(2).count());
+
+        User loadedUser = newUser("loaded@mail.com", LocalDate.of(1700, 1, 1));
+        loadedUser.setId(9);
+        userStore.load(List.of(loadedUser));
+
+        stats = statistics.getStats(TODAY, AGE_BAND_STARTS);
+        assertEquals(1, stats.total());
+        assertEquals(1800, stats.birthYears().get(0).year());
+        assertEquals(1, stats.ageBands().get(2).count());
+    }
+}
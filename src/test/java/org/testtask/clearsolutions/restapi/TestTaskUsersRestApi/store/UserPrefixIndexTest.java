@@ -0,0 +1,86 @@
+package org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.model.User;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.ColumnarUserStore;
+import org.testtask.clearsolutions.restapi.TestTaskUsersRestApi.store.impl.InMemoryUserStore;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserPrefixIndexTest {
+
+    private UserStore userStore;
+    private UserPrefixIndex index;
+
+    @BeforeEach
+    public void setup() {
+        userStore = new InMemoryUserStore();
+        userStore.insert(newUser("john.doe@mail.com", "John", "Doe"));
+        index = UserPrefixIndex.of(userStore);
+    }
+
+    @Test
+    void testFind_MatchesEveryNameIgnoringCaseAndAccents() {
+        User zoe = userStore.insert(newUser("zoe@mail.com", "Zoë", "Jöhnson"));
+
+        assertEquals(List.of(zoe.getId()), index.findIdsByPrefix("ZO", 10));
+        assertEquals(List.of(1L, zoe.getId()), index.findIdsByPrefix("joh", 10));
+        assertEquals(List.of(zoe.getId()), index.findIdsByPrefix("jöhns", 10));
+        assertEquals(List.of(1L), index.findIdsByPrefix("john.d", 10));
+        assertEquals(List.of(), index.findIdsByPrefix("x", 10));
+    }
+
+    @Test
+    void testFind_ReturnsEachUserOnceInNameOrderUpToLimit() {
+        User dora = userStore.insert(newUser("dora@mail.com", "Dora", "Dorian"));
+        User dan = userStore.insert(newUser("dan@mail.com", "Dan", "Brown"));
+
+        assertEquals(List.of(dan.getId(), 1L, dora.getId()), index.findIdsByPrefix("d", 10));
+        assertEquals(List.of(dan.getId(), 1L), index.findIdsByPrefix("d", 2));
+    }
+
+    @Test
+    void testIndex_FollowsUpdatesDeletesAndLoads() {
+        User maria = userStore.insert(newUser("maria@mail.com", "Maria", "Smith"));
+        userStore.update(maria.getId(), newUser("maria@mail.com", "Maria", "Jones"));
+        assertEquals(List.of(), index.findIdsByPrefix("smi", 10));
+        assertEquals(List.of(maria.getId()), index.findIdsByPrefix("jon", 10));
+
+        userStore.delete(1);
+        assertEquals(List.of(), index.findIdsByPrefix("doe", 10));
+
+        userStore.load(List.of(withId(newUser("ann@mail.com", "Ann", "Lee"), 7)));
+        assertEquals(List.of(), index.findIdsByPrefix("maria", 10));
+        assertEquals(List.of(7L), index.findIdsByPrefix("lee", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testOf_IndexesColumnarStore() {
+        UserStore columnarUserStore = new ColumnarUserStore();
+        columnarUserStore.insert(newUser("anna@mail.com", "Anna", "Karenina"));
+
+        UserPrefixIndex columnarIndex = UserPrefixIndex.of(columnarUserStore);
+        columnarUserStore.insert(newUser("kate@mail.com", "Kate", "Keller"));
+
+        assertEquals(List.of(1L, 2L), columnarIndex.findIdsByPrefix("ka", 10));
+    }
+
+    private static User newUser(String email, String firstName, String lastName) {
+        return User.builder()
+                .email(email)
+                .firstName(firstName)
+                .lastName(lastName)
+                .birthDate(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static User withId(User user, long id) {
+        user.setId(id);
+        return user;
+    }
+}